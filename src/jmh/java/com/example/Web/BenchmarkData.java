@@ -0,0 +1,39 @@
+package com.example.Web;
+
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sales CSVs and upload arguments shared by the benchmarks and the load harness.
+ */
+final class BenchmarkData {
+
+	static final String ROOT = "benchmark-root";
+	static final String MONTH = "1";
+	static final String FROM_DATE = "2024-01-01";
+	static final String TO_DATE = "2024-01-31";
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * A valid sales CSV (date, units, price, sku) of about {@code size} bytes, with dates in
+	 * {@link #FROM_DATE}..{@link #TO_DATE}.
+	 */
+	static byte[] salesCsv(DataSize size) {
+		StringBuilder csv = new StringBuilder("date,units,price,sku\n");
+		for (int row = 0; csv.length() < size.toBytes(); row++) {
+			csv.append("2024-01-").append(String.format("%02d", row % 31 + 1))
+					.append(',').append(row % 17)
+					.append(',').append(row % 1000).append('.').append(String.format("%02d", row % 100))
+					.append(",SKU-").append(row % 5000).append('\n');
+		}
+		return csv.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	static MockMultipartFile multipart(byte[] csv) {
+		return new MockMultipartFile("file", "sales.csv", "text/csv", csv);
+	}
+}
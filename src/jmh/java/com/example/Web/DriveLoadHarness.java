@@ -0,0 +1,307 @@
+package com.example.Web;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load harness for the upload, download and listing paths against the in-memory {@link FakeDrive}
+ * with simulated latency and quota errors. For every file size and concurrency level it reports
+ * p50/p99 latency, throughput, heap allocated per request, Drive calls per upload and the
+ * folder-resolution round-trips among them.
+ *
+ * Heap per request is the bytes allocated by every thread during the timed requests (the service's
+ * own pools included, the fake's share left out), read from the per-thread allocation counters, so
+ * it does not depend on when the GC runs. Each run starts after a full collection, so one run's
+ * garbage is not collected on the next one's clock. For allocation figures from JMH, run
+ * {@link DriveTransferBenchmark} with {@code -prof gc}.
+ *
+ * Arguments are {@code name=value} pairs, all optional:
+ * <pre>
+ * sizes=64KB,1MB,16MB  concurrency=1,4,16  requests=200  latency=20ms  quota-error-rate=0.01  list-files=1000
+ * </pre>
+ */
+public class DriveLoadHarness {
+
+	private static final List<String> FOLDER_OPERATIONS = List.of("files.list.folder", "files.create.folder");
+
+	private final Duration latency;
+	private final double quotaErrorRate;
+	private final int requests;
+
+	private DriveLoadHarness(Duration latency, double quotaErrorRate, int requests) {
+		this.latency = latency;
+		this.quotaErrorRate = quotaErrorRate;
+		this.requests = requests;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected name=value, got: " + arg);
+			}
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		List<DataSize> sizes = Arrays.stream(options.getOrDefault("sizes", "64KB,1MB,16MB").split(","))
+				.map(DataSize::parse).toList();
+		List<Integer> concurrencyLevels = Arrays.stream(options.getOrDefault("concurrency", "1,4,16").split(","))
+				.map(Integer::valueOf).toList();
+		DriveLoadHarness harness = new DriveLoadHarness(
+				Duration.ofMillis(Long.parseLong(options.getOrDefault("latency", "20ms").replace("ms", ""))),
+				Double.parseDouble(options.getOrDefault("quota-error-rate", "0.01")),
+				Integer.parseInt(options.getOrDefault("requests", "200")));
+		int listFiles = Integer.parseInt(options.getOrDefault("list-files", "1000"));
+
+		System.out.printf("Fake Drive: latency %d ms, quota error rate %.3f, %d requests per run%n%n",
+				harness.latency.toMillis(), harness.quotaErrorRate, harness.requests);
+		System.out.printf("%-9s %-6s %5s %10s %10s %10s %12s %12s %10s %8s%n", "phase", "size", "conc",
+				"p50 ms", "p99 ms", "MB/s", "req/s", "heap/req", "calls/req", "folder");
+		for (DataSize size : sizes) {
+			for (int concurrency : concurrencyLevels) {
+				harness.uploads(size, concurrency).print();
+				harness.downloads(size, concurrency).print();
+			}
+		}
+		for (int concurrency : concurrencyLevels) {
+			harness.listings(listFiles, concurrency).print();
+		}
+	}
+
+	/**
+	 * Uploads into one market/country per worker, so the first upload of each worker resolves (and
+	 * creates) its folders and the rest hit the folder cache.
+	 */
+	private Run uploads(DataSize size, int concurrency) throws Exception {
+		FakeDrive drive = new FakeDrive();
+		drive.discardUploadedContent();
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		GoogleDriveService service = newService(drive, registry);
+		MockMultipartFile file = BenchmarkData.multipart(BenchmarkData.salesCsv(size));
+		configure(drive);
+		try {
+			Run run = run("upload", size, concurrency, drive, worker -> service.uploadSalesDataFile(file,
+					BenchmarkData.MONTH, "Market" + worker, "Country" + worker, "Bryco",
+					BenchmarkData.FROM_DATE, BenchmarkData.TO_DATE));
+			run.folderCalls = FOLDER_OPERATIONS.stream()
+					.flatMap(operation -> registry.find("drive.calls").tag("operation", operation).timers().stream())
+					.mapToLong(Timer::count).sum();
+			return run;
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	private Run downloads(DataSize size, int concurrency) throws Exception {
+		FakeDrive drive = new FakeDrive();
+		String fileId = drive.addFile("download.csv", BenchmarkData.ROOT, BenchmarkData.salesCsv(size));
+		GoogleDriveService service = newService(drive, new SimpleMeterRegistry());
+		configure(drive);
+		try {
+			return run("download", size, concurrency, drive, worker -> {
+				try (InputStream in = service.openDownloadStream(fileId, -1, -1)) {
+					in.transferTo(OutputStream.nullOutputStream());
+				}
+				return null;
+			});
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	private Run listings(int files, int concurrency) throws Exception {
+		FakeDrive drive = new FakeDrive();
+		String folderId = drive.addFolder("listing", BenchmarkData.ROOT);
+		for (int i = 0; i < files; i++) {
+			drive.addFile(SalesFileName.format("Brand" + i, BenchmarkData.FROM_DATE, BenchmarkData.TO_DATE), folderId, 1024);
+		}
+		GoogleDriveService service = newService(drive, new SimpleMeterRegistry());
+		configure(drive);
+		try {
+			Run run = run("list", null, concurrency, drive, worker -> service.listFilesInFolder(folderId));
+			run.label = files + "f";
+			return run;
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@FunctionalInterface
+	private interface Request {
+		Object send(int worker) throws IOException;
+	}
+
+	/**
+	 * Sends {@link #requests} requests from {@code concurrency} workers, after one untimed request
+	 * per worker to warm up.
+	 */
+	private Run run(String phase, DataSize size, int concurrency, FakeDrive drive, Request request) throws Exception {
+		ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+		try {
+			List<Future<?>> warmUp = new ArrayList<>();
+			for (int worker = 0; worker < concurrency; worker++) {
+				int id = worker;
+				warmUp.add(workers.submit(() -> request.send(id)));
+			}
+			await(warmUp);
+			collectGarbage();
+
+			long[] latencies = new long[requests];
+			AtomicInteger next = new AtomicInteger();
+			Map<Long, Long> allocatedBefore = allocatedBytesByThread();
+			long fakeAllocatedBefore = drive.getAllocatedBytes();
+			int callsBefore = drive.getRequestCount();
+			int quotaErrorsBefore = drive.getQuotaErrorCount();
+			long start = System.nanoTime();
+			List<Future<?>> running = new ArrayList<>();
+			for (int worker = 0; worker < concurrency; worker++) {
+				int id = worker;
+				running.add(workers.submit(() -> {
+					for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+						long sent = System.nanoTime();
+						request.send(id);
+						latencies[i] = System.nanoTime() - sent;
+					}
+					return null;
+				}));
+			}
+			await(running);
+			long elapsed = System.nanoTime() - start;
+			long allocated = allocatedSince(allocatedBefore);
+
+			Run run = new Run(phase, size != null ? label(size) : "", concurrency);
+			Arrays.sort(latencies);
+			run.p50Millis = latencies[(int) (requests * 0.50)] / 1e6;
+			run.p99Millis = latencies[Math.min(requests - 1, (int) (requests * 0.99))] / 1e6;
+			run.requestsPerSecond = requests / (elapsed / 1e9);
+			run.megabytesPerSecond = size != null ? run.requestsPerSecond * size.toBytes() / (1024.0 * 1024.0) : 0;
+			run.heapBytesPerRequest = (allocated - (drive.getAllocatedBytes() - fakeAllocatedBefore)) / requests;
+			run.callsPerRequest = (double) (drive.getRequestCount() - callsBefore) / requests;
+			run.quotaErrors = drive.getQuotaErrorCount() - quotaErrorsBefore;
+			return run;
+		} finally {
+			workers.shutdownNow();
+			workers.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	private void configure(FakeDrive drive) {
+		drive.setLatency(latency);
+		drive.setQuotaErrorRate(quotaErrorRate);
+	}
+
+	private static GoogleDriveService newService(FakeDrive drive, SimpleMeterRegistry registry) throws IOException {
+		return drive.newService(BenchmarkData.ROOT, "off", new DriveCompression("none", 6), new DriveMetrics(registry));
+	}
+
+	private static void await(List<Future<?>> futures) throws Exception {
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+	}
+
+	private static String label(DataSize size) {
+		long bytes = size.toBytes();
+		if (bytes % DataSize.ofMegabytes(1).toBytes() == 0) {
+			return size.toMegabytes() + "MB";
+		}
+		return bytes % DataSize.ofKilobytes(1).toBytes() == 0 ? size.toKilobytes() + "KB" : bytes + "B";
+	}
+
+	/**
+	 * Runs a full collection and waits for it to be recorded, up to a few seconds.
+	 */
+	private static void collectGarbage() throws InterruptedException {
+		long collections = collectionCount();
+		System.gc();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (collectionCount() == collections && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static long collectionCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+	}
+
+	/**
+	 * Bytes allocated so far by each live thread, by thread ID.
+	 */
+	private static Map<Long, Long> allocatedBytesByThread() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long[] ids = threads.getAllThreadIds();
+		long[] allocated = threads.getThreadAllocatedBytes(ids);
+		Map<Long, Long> byThread = new HashMap<>();
+		for (int i = 0; i < ids.length; i++) {
+			if (allocated[i] >= 0) {
+				byThread.put(ids[i], allocated[i]);
+			}
+		}
+		return byThread;
+	}
+
+	/**
+	 * Bytes allocated by all threads since {@code before}; threads started since then count in full.
+	 * Threads that ended in between are lost, so the workers and the service's pools must outlive the run.
+	 */
+	private static long allocatedSince(Map<Long, Long> before) {
+		long allocated = 0;
+		for (Map.Entry<Long, Long> thread : allocatedBytesByThread().entrySet()) {
+			allocated += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+		}
+		return allocated;
+	}
+
+	private static class Run {
+		final String phase;
+		String label;
+		final int concurrency;
+		double p50Millis;
+		double p99Millis;
+		double megabytesPerSecond;
+		double requestsPerSecond;
+		long heapBytesPerRequest;
+		double callsPerRequest;
+		long folderCalls = -1; // Folder lookups and creations over the run, warm-up included; uploads only
+		int quotaErrors;
+
+		Run(String phase, String label, int concurrency) {
+			this.phase = phase;
+			this.label = label;
+			this.concurrency = concurrency;
+		}
+
+		void print() {
+			System.out.printf("%-9s %-6s %5d %10.2f %10.2f %10.1f %12.1f %12s %10.2f %8s%s%n", phase, label,
+					concurrency, p50Millis, p99Millis, megabytesPerSecond, requestsPerSecond,
+					DataSize.ofBytes(heapBytesPerRequest).toKilobytes() + "KB", callsPerRequest,
+					folderCalls >= 0 ? String.valueOf(folderCalls) : "",
+					quotaErrors > 0 ? "  (" + quotaErrors + " quota errors retried)" : "");
+		}
+	}
+}
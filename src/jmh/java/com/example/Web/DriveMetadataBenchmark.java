@@ -0,0 +1,118 @@
+package com.example.Web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metadata paths against the in-memory {@link FakeDrive}: listing a folder of a given size straight
+ * from Drive (the mirror is off), and resolving the month/market/country folder chain with a warm
+ * folder cache and with a new market and country each time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DriveMetadataBenchmark {
+
+	/**
+	 * A folder of {@code folderFiles} sales files, listed straight from Drive (the mirror is off).
+	 */
+	@State(Scope.Benchmark)
+	public static class Listing {
+
+		@Param({"100", "1000", "10000"})
+		public int folderFiles;
+
+		@Param({"0", "20"})
+		public long latencyMillis;
+
+		GoogleDriveService service;
+		String folderId;
+
+		@Setup
+		public void setUp() throws IOException {
+			FakeDrive drive = new FakeDrive();
+			folderId = drive.addFolder("listing", BenchmarkData.ROOT);
+			for (int i = 0; i < folderFiles; i++) {
+				drive.addFile(SalesFileName.format("Brand" + i, BenchmarkData.FROM_DATE, BenchmarkData.TO_DATE), folderId, 1024);
+			}
+			service = newService(drive);
+			drive.setLatency(Duration.ofMillis(latencyMillis));
+		}
+
+		@TearDown
+		public void tearDown() {
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * An empty tree whose Amazon/US folders of month 1 are in the folder cache. The fake is
+	 * recreated every iteration, so the folders created by cold resolutions do not pile up.
+	 */
+	@State(Scope.Benchmark)
+	public static class Folders {
+
+		@Param({"0", "20"})
+		public long latencyMillis;
+
+		final AtomicLong sequence = new AtomicLong();
+		GoogleDriveService service;
+
+		@Setup(Level.Iteration)
+		public void setUp() throws IOException {
+			FakeDrive drive = new FakeDrive();
+			service = newService(drive);
+			service.resolveCountryFolder(BenchmarkData.MONTH, "Amazon", "US");
+			drive.setLatency(Duration.ofMillis(latencyMillis));
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown() {
+			service.shutdown();
+		}
+	}
+
+	@Benchmark
+	public List<DriveFileMetadata> listFolder(Listing listing) throws IOException {
+		return listing.service.listFilesInFolder(listing.folderId);
+	}
+
+	@Benchmark
+	public String resolveFolderWarm(Folders folders) throws IOException {
+		return folders.service.resolveCountryFolder(BenchmarkData.MONTH, "Amazon", "US");
+	}
+
+	/**
+	 * A market and country not seen before: each of the two levels is looked up and created.
+	 */
+	@Benchmark
+	public String resolveFolderCold(Folders folders) throws IOException {
+		long id = folders.sequence.incrementAndGet();
+		return folders.service.resolveCountryFolder(BenchmarkData.MONTH, "Market" + id, "Country" + id);
+	}
+
+	private static GoogleDriveService newService(FakeDrive drive) throws IOException {
+		return drive.newService(BenchmarkData.ROOT, "off", new DriveCompression("none", 6),
+				new DriveMetrics(new SimpleMeterRegistry()));
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.Web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload and download of one sales CSV through {@link GoogleDriveService} against the in-memory
+ * {@link FakeDrive}: validation, hashing, chunking and the Drive client's own overhead, plus the
+ * simulated round-trips. Run with {@code -t N} for concurrency and {@code -prof gc} for heap per
+ * operation ({@code gc.alloc.rate.norm}, which includes the fake's share of the work).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class DriveTransferBenchmark {
+
+	@Param({"64KB", "1MB", "16MB"})
+	public String fileSize;
+
+	@Param({"0", "20"})
+	public long latencyMillis;
+
+	private GoogleDriveService service;
+	private MockMultipartFile upload;
+	private String downloadId;
+
+	@Setup
+	public void setUp() throws IOException {
+		FakeDrive drive = new FakeDrive();
+		drive.discardUploadedContent();
+		byte[] csv = BenchmarkData.salesCsv(DataSize.parse(fileSize));
+		upload = BenchmarkData.multipart(csv);
+		downloadId = drive.addFile("download.csv", BenchmarkData.ROOT, csv);
+		// Dedup off: every invocation uploads the same bytes as a new file.
+		service = drive.newService(BenchmarkData.ROOT, "off", new DriveCompression("none", 6),
+				new DriveMetrics(new SimpleMeterRegistry()));
+		drive.setLatency(Duration.ofMillis(latencyMillis));
+	}
+
+	@TearDown
+	public void tearDown() {
+		service.shutdown();
+	}
+
+	@Benchmark
+	public UploadResult upload() throws IOException {
+		return service.uploadSalesDataFile(upload, BenchmarkData.MONTH, "Amazon", "US", "Bryco",
+				BenchmarkData.FROM_DATE, BenchmarkData.TO_DATE);
+	}
+
+	@Benchmark
+	public long download() throws IOException {
+		try (InputStream in = service.openDownloadStream(downloadId, -1, -1)) {
+			return in.transferTo(OutputStream.nullOutputStream());
+		}
+	}
+}
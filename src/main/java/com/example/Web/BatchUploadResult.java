@@ -0,0 +1,20 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a single file within a batch upload.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchUploadResult {
+    private int index; // Position of the file in the request
+    private String originalFileName; // Name of the file as sent by the client
+    private String fileId; // Google Drive file ID, if the upload succeeded
+    private boolean success; // Whether this file was uploaded
+    private String error; // Failure reason, if the upload failed
+    private boolean deduplicated; // True if an identical file already existed and no new file was created
+}
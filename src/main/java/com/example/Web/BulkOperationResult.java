@@ -0,0 +1,20 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a single file within a bulk rename or delete.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOperationResult {
+    private int index; // Position of the file in the request
+    private String fileId; // Google Drive file ID
+    private boolean success; // Whether the operation succeeded for this file
+    private int status; // HTTP status Drive returned for this file (0 if it was never sent)
+    private String error; // Failure reason, if the operation failed
+    private int attempts; // Number of times the item was sent to Drive
+}
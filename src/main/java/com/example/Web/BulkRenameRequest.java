@@ -0,0 +1,16 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One file of a bulk rename request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRenameRequest {
+    private String fileId; // Google Drive file ID
+    private String newName; // The new file name
+}
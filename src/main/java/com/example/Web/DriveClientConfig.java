@@ -0,0 +1,230 @@
+package com.example.Web;
+
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveScopes;
+import com.google.auth.http.HttpCredentialsAdapter;
+import com.google.auth.oauth2.GoogleCredentials;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the authenticated Google Drive client shared by {@link GoogleDriveService} and
+ * {@link DriveMetadataMirror}. Keeping it a bean lets tests swap in a client backed by a fake transport.
+ * <p>
+ * The HTTP transport is chosen by {@code google.drive.http.transport}: {@code apache} (the default)
+ * keeps a pool of keep-alive connections so small metadata calls do not pay for a new TLS handshake;
+ * {@code net} is the previous {@code HttpURLConnection} transport.
+ */
+@Configuration
+public class DriveClientConfig {
+
+    private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+
+    @Value("${GOOGLE_APPLICATION_CREDENTIALS_JSON_STRING:}")
+    private String serviceAccountKeyJsonString;
+
+    @Value("${google.drive.service-account-key-path:/etc/secrets/google-credentials.json}")
+    private String serviceAccountKeyPath;
+
+    @Value("${google.drive.application-name}")
+    private String applicationName;
+
+    @Value("${google.drive.http.transport:apache}")
+    private String transportType;
+
+    @Value("${google.drive.http.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${google.drive.http.max-connections-per-route:32}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${google.drive.http.keep-alive:60s}")
+    private Duration keepAlive;
+
+    @Value("${google.drive.http.connection-ttl:0}")
+    private Duration connectionTtl;
+
+    @Value("${google.drive.http.connect-timeout:10s}")
+    private Duration connectTimeout;
+
+    @Value("${google.drive.http.metadata-read-timeout:30s}")
+    private Duration metadataReadTimeout;
+
+    @Value("${google.drive.http.media-read-timeout:5m}")
+    private Duration mediaReadTimeout;
+
+    @Value("${google.drive.http.gzip:true}")
+    private boolean gzip;
+
+    @Bean(destroyMethod = "shutdown")
+    public HttpTransport driveHttpTransport() throws IOException, GeneralSecurityException {
+        if ("net".equalsIgnoreCase(transportType)) {
+            System.out.println("Using HttpURLConnection transport for Google Drive.");
+            return GoogleNetHttpTransport.newTrustedTransport();
+        }
+        if (!"apache".equalsIgnoreCase(transportType)) {
+            throw new IllegalArgumentException("Unknown google.drive.http.transport: " + transportType + " (expected apache or net)");
+        }
+
+        long keepAliveMillis = keepAlive.toMillis();
+        System.out.println("Using pooled Apache HttpClient transport for Google Drive (max " + maxConnections
+                + " connections, " + maxConnectionsPerRoute + " per route, keep-alive " + keepAlive + ").");
+        // Keep-alive is idle time: the strategy and the idle evictor close connections nobody has used
+        // for that long, while busy connections stay open. The time-to-live caps total age and is off
+        // unless configured.
+        HttpClientBuilder client = ApacheHttpTransport.newDefaultHttpClientBuilder()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setKeepAliveStrategy((response, context) -> keepAliveMillis(response, context, keepAliveMillis))
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                // The Google HTTP client negotiates and decodes gzip itself (see DriveRequestTuning).
+                .disableContentCompression();
+        if (!connectionTtl.isZero()) {
+            client.setConnectionTimeToLive(connectionTtl.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return new ApacheHttpTransport(client.build());
+    }
+
+    @Bean
+    public Drive drive(HttpTransport driveHttpTransport) throws IOException {
+        InputStream serviceAccountStream = null;
+        try {
+            if (serviceAccountKeyJsonString != null && !serviceAccountKeyJsonString.isEmpty()) {
+                System.out.println("Attempting to load Google credentials from environment variable GOOGLE_APPLICATION_CREDENTIALS_JSON_STRING.");
+                serviceAccountStream = new ByteArrayInputStream(serviceAccountKeyJsonString.getBytes(StandardCharsets.UTF_8));
+            } else if (serviceAccountKeyPath != null && !serviceAccountKeyPath.isEmpty()) {
+                // Use fully qualified name for java.io.File
+                java.io.File credentialsFile = new java.io.File(serviceAccountKeyPath);
+
+                if (credentialsFile.exists() && credentialsFile.isFile()) {
+                    System.out.println("Attempting to load Google credentials from file system path: " + serviceAccountKeyPath);
+                    serviceAccountStream = new FileInputStream(credentialsFile);
+                } else {
+                    System.err.println("Google credentials file NOT found at file system path: " + serviceAccountKeyPath);
+                    System.err.println("Attempting to load as a Class Path Resource (fallback for local dev if file is bundled in JAR)...");
+                    serviceAccountStream = getClass().getClassLoader().getResourceAsStream(serviceAccountKeyPath);
+                    if (serviceAccountStream == null) {
+                        throw new FileNotFoundException("Google credentials.json not found on file system or as a classpath resource at: " + serviceAccountKeyPath);
+                    }
+                }
+            } else {
+                throw new IOException("Google service account credentials not found. Neither environment variable GOOGLE_APPLICATION_CREDENTIALS_JSON_STRING nor file path google.drive.service-account-key-path is configured.");
+            }
+
+            if (serviceAccountStream == null) {
+                 throw new IOException("Failed to obtain InputStream for Google credentials.json after all attempts.");
+            }
+
+            GoogleCredentials credentials = GoogleCredentials.fromStream(serviceAccountStream)
+                    .createScoped(Collections.singleton(DriveScopes.DRIVE));
+
+            HttpRequestInitializer requestInitializer = new DriveRequestTuning(new HttpCredentialsAdapter(credentials));
+
+            Drive drive = new Drive.Builder(
+                    driveHttpTransport,
+                    JSON_FACTORY,
+                    requestInitializer)
+                    .setApplicationName(applicationName)
+                    .build();
+
+            System.out.println("Google Drive client initialized successfully.");
+            return drive;
+
+        } catch (FileNotFoundException e) {
+            System.err.println("ERROR: Google credentials file not found: " + e.getMessage());
+            throw e;
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to initialize Google Drive client: " + e.getMessage());
+            throw e;
+        } finally {
+            if (serviceAccountStream != null) {
+                try {
+                    serviceAccountStream.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing service account stream: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Honours the server's {@code Keep-Alive: timeout=N} hint but never keeps a connection longer than configured.
+     */
+    private static long keepAliveMillis(HttpResponse response, HttpContext context, long maxMillis) {
+        BasicHeaderElementIterator elements = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+        while (elements.hasNext()) {
+            HeaderElement element = elements.nextElement();
+            if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                try {
+                    return Math.min(maxMillis, Long.parseLong(element.getValue()) * 1000);
+                } catch (NumberFormatException ignored) {
+                    // Fall through to the configured maximum.
+                }
+            }
+        }
+        return maxMillis;
+    }
+
+    /**
+     * Adds authentication and per-call tuning to every Drive request. Timeouts and encoding depend on
+     * the URL, which is only set after initializers run, so they are applied in an execute interceptor:
+     * media transfers ({@code /upload/...} or {@code alt=media}) get the long read timeout and no gzip
+     * (it would break byte ranges and only burns CPU on CSV chunks we stream straight through), while
+     * metadata calls get the short timeout and, if enabled, gzip-encoded JSON responses.
+     */
+    private class DriveRequestTuning implements HttpRequestInitializer {
+
+        private final HttpRequestInitializer credentials;
+
+        DriveRequestTuning(HttpRequestInitializer credentials) {
+            this.credentials = credentials;
+        }
+
+        @Override
+        public void initialize(HttpRequest httpRequest) throws IOException {
+            credentials.initialize(httpRequest);
+            HttpExecuteInterceptor authInterceptor = httpRequest.getInterceptor();
+            httpRequest.setInterceptor(request -> {
+                boolean media = isMediaRequest(request);
+                request.setConnectTimeout((int) connectTimeout.toMillis());
+                request.setReadTimeout((int) (media ? mediaReadTimeout : metadataReadTimeout).toMillis());
+                request.getHeaders().setAcceptEncoding(gzip && !media ? "gzip" : null);
+                if (authInterceptor != null) {
+                    authInterceptor.intercept(request);
+                }
+            });
+        }
+
+        private boolean isMediaRequest(HttpRequest request) {
+            return request.getUrl().getRawPath().startsWith("/upload/")
+                    || "media".equals(request.getUrl().getFirst("alt"));
+        }
+    }
+}
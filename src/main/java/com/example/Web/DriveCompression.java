@@ -0,0 +1,106 @@
+package com.example.Web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Optional compression of sales files stored in Drive ({@code google.drive.storage.compression}).
+ *
+ * With "gzip", uploads are compressed on the fly as they stream to Drive and stored as
+ * {@code .csv.gz} with the codec recorded in the file's appProperties. Downloads and exports
+ * decompress on the fly, or pass the stored bytes through to clients that accept gzip.
+ * Files stored before compression was switched on stay readable, since the codec is taken from
+ * each file's own metadata.
+ */
+@Component
+public class DriveCompression {
+
+    public static final String CODEC_PROPERTY = "codec";
+    public static final String GZIP = "gzip";
+    public static final String GZIP_SUFFIX = ".gz";
+    public static final String GZIP_MIME_TYPE = "application/gzip";
+
+    private static final int DECOMPRESS_BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final int level;
+
+    public DriveCompression(
+            @Value("${google.drive.storage.compression:none}") String codec,
+            @Value("${google.drive.storage.gzip-level:6}") int level) {
+        if (!"none".equalsIgnoreCase(codec) && !GZIP.equalsIgnoreCase(codec)) {
+            throw new IllegalArgumentException("Unsupported google.drive.storage.compression '" + codec + "'; use none or gzip");
+        }
+        this.enabled = GZIP.equalsIgnoreCase(codec);
+        this.level = level;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The name a new file is stored under: {@code fileName}, plus {@code .gz} when compressing.
+     */
+    public String storedName(String fileName) {
+        return enabled ? fileName + GZIP_SUFFIX : fileName;
+    }
+
+    public String storedMimeType(String mimeType) {
+        return enabled ? GZIP_MIME_TYPE : mimeType;
+    }
+
+    /**
+     * The appProperties recording the codec of a new file, or null when not compressing.
+     */
+    public Map<String, String> codecProperties() {
+        return enabled ? Map.of(CODEC_PROPERTY, GZIP) : null;
+    }
+
+    /**
+     * Returns {@code content} compressed as it is read, or unchanged when not compressing.
+     */
+    public InputStream compress(InputStream content) {
+        return enabled ? new GzipCompressingInputStream(content, level) : content;
+    }
+
+    /**
+     * Whether a stored file is gzip-compressed, from its codec property or, for listings that do not
+     * include appProperties, its {@code .gz} name.
+     */
+    public static boolean isGzip(DriveFileMetadata file) {
+        Map<String, String> properties = file.getAppProperties();
+        if (properties != null && properties.containsKey(CODEC_PROPERTY)) {
+            return GZIP.equals(properties.get(CODEC_PROPERTY));
+        }
+        return file.getName() != null && file.getName().endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * The file's name as the client sees it, without the {@code .gz} of compressed storage.
+     */
+    public static String decodedName(DriveFileMetadata file) {
+        String name = file.getName();
+        return isGzip(file) && name.endsWith(GZIP_SUFFIX) ? name.substring(0, name.length() - GZIP_SUFFIX.length()) : name;
+    }
+
+    /**
+     * Wraps the stored content of {@code file} so it reads as the original CSV.
+     */
+    public static InputStream decode(DriveFileMetadata file, InputStream stored) throws IOException {
+        if (!isGzip(file)) {
+            return stored;
+        }
+        try {
+            return new GZIPInputStream(stored, DECOMPRESS_BUFFER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            stored.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.Web;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps copies of downloaded files on local disk so repeated downloads of the same report do not
+ * go back to Drive.
+ *
+ * Entries are keyed by file ID plus the file's version ({@code md5Checksum}, or {@code modifiedTime}
+ * for files without one), so a file changed in Drive simply misses and the old copy is dropped.
+ * The total size is bounded and the least recently used files are evicted first. Concurrent misses
+ * on the same version share one Drive download. Files survive restarts: the index is rebuilt from
+ * the cache directory on startup. The store itself is an {@link LruDiskCache}.
+ *
+ * Downloads served to clients do not wait for the cache: on a miss the client is streamed straight
+ * from Drive while {@link #cacheWhileReading} copies the bytes to disk, and the entry is published
+ * once the whole file has gone through.
+ */
+@Component
+public class DriveContentCache {
+
+    /**
+     * Opens the file's full content from Drive for a cache miss.
+     */
+    @FunctionalInterface
+    public interface ContentLoader {
+        InputStream open() throws IOException;
+    }
+
+    private static final String CONTENT_SUFFIX = ".content";
+
+    private final boolean enabled;
+    private final long maxFileBytes;
+    private final LruDiskCache disk;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedDownloads = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public DriveContentCache(
+            DriveMetrics metrics,
+            @Value("${google.drive.content-cache.enabled:true}") boolean enabled,
+            @Value("${google.drive.content-cache.directory:${java.io.tmpdir}/drive-content-cache}") String directory,
+            @Value("${google.drive.content-cache.max-size:2GB}") DataSize maxSize,
+            @Value("${google.drive.content-cache.max-file-size:256MB}") DataSize maxFileSize) {
+        this.enabled = enabled;
+        this.maxFileBytes = Math.min(maxFileSize.toBytes(), maxSize.toBytes());
+        this.disk = new LruDiskCache(Paths.get(directory), CONTENT_SUFFIX, maxSize.toBytes(), "cached file");
+
+        metrics.counter("drive.content.cache.hits", "Downloads served from the local content cache", hits, AtomicLong::get);
+        metrics.counter("drive.content.cache.misses", "Downloads that had to fetch the file from Drive", misses, AtomicLong::get);
+        metrics.counter("drive.content.cache.bytes.saved", "Bytes served from the content cache instead of Drive", bytesSaved, AtomicLong::get);
+        metrics.gauge("drive.content.cache.size", "Bytes currently held in the content cache", disk, LruDiskCache::getTotalBytes);
+    }
+
+    /**
+     * Rebuilds the index from files left by a previous run; unfinished downloads are discarded.
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        disk.load();
+    }
+
+    /**
+     * Whether this file can be cached: caching is on, Drive reports a size and a version for it, and
+     * it is no larger than {@code google.drive.content-cache.max-file-size}.
+     */
+    public boolean isCacheable(DriveFileMetadata metadata) {
+        return enabled && metadata.getSize() != null && metadata.getSize() <= maxFileBytes && version(metadata) != null;
+    }
+
+    /**
+     * Opens the cached content of the file if it is in the cache, without fetching it on a miss.
+     *
+     * @param served Number of bytes the caller is going to serve from the channel, counted as saved on a hit.
+     * @return The content, or null on a miss or if the file is not {@linkplain #isCacheable cacheable}.
+     */
+    public FileChannel openIfCached(DriveFileMetadata metadata, long served) throws IOException {
+        if (!isCacheable(metadata)) {
+            return null;
+        }
+        FileChannel cached = disk.openIfPresent(key(metadata), DriveContentCache::openChannel);
+        if (cached != null) {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(served);
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * Wraps a full download of the file from Drive so its bytes are copied into the cache as the
+     * caller reads them. The entry is published once the stream has been read to the end; if it is
+     * closed early, or the copy cannot be written, the partial copy is dropped and the caller's
+     * stream is unaffected. If the file is not cacheable, or another download of the same version
+     * is already filling the cache, {@code download} is returned as is.
+     */
+    public InputStream cacheWhileReading(DriveFileMetadata metadata, InputStream download) throws IOException {
+        if (!isCacheable(metadata)) {
+            return download;
+        }
+        String key = key(metadata);
+        CompletableFuture<Boolean> fill = disk.beginFill(key);
+        if (fill == null) {
+            sharedDownloads.incrementAndGet();
+            return download;
+        }
+        Path partial = disk.partialPath(key);
+        OutputStream copy;
+        try {
+            copy = Files.newOutputStream(partial);
+        } catch (IOException e) {
+            disk.endFill(key, fill, false);
+            System.err.println("Could not cache file " + metadata.getId() + ": " + e.getMessage());
+            return download;
+        }
+        return new FillingInputStream(download, copy, key, partial, metadata.getSize(), fill);
+    }
+
+    /**
+     * Opens the cached content of the file, downloading it into the cache first on a miss.
+     * The channel stays readable even if the entry is evicted while it is open.
+     *
+     * @param served Number of bytes the caller is going to serve from the channel, counted as saved on a hit.
+     * @throws IllegalArgumentException if the file is not {@linkplain #isCacheable cacheable}.
+     */
+    public FileChannel open(DriveFileMetadata metadata, long served, ContentLoader loader) throws IOException {
+        if (!isCacheable(metadata)) {
+            throw new IllegalArgumentException("File " + metadata.getId() + " cannot be cached");
+        }
+        String key = key(metadata);
+        FileChannel cached = disk.openIfPresent(key, DriveContentCache::openChannel);
+        if (cached != null) {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(served);
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        boolean downloaded = disk.fill(key, target -> {
+            try (InputStream in = loader.open()) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        });
+        if (!downloaded) {
+            sharedDownloads.incrementAndGet();
+        }
+        cached = disk.openIfPresent(key, DriveContentCache::openChannel);
+        if (cached == null) {
+            throw new NoSuchFileException(disk.entryPath(key).toString(), null, "evicted before it could be served");
+        }
+        return cached;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        stats.put("enabled", enabled);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("sharedDownloads", sharedDownloads.get());
+        stats.put("bytesSaved", bytesSaved.get());
+        disk.addStats(stats);
+        return stats;
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    private static String key(DriveFileMetadata metadata) {
+        return metadata.getId() + "." + version(metadata);
+    }
+
+    /**
+     * The version part of the cache key. Drive IDs and MD5 hex digests are file-name safe already;
+     * anything else is reduced to safe characters.
+     */
+    private static String version(DriveFileMetadata metadata) {
+        if (metadata.getMd5Checksum() != null) {
+            return metadata.getMd5Checksum().replaceAll("[^A-Za-z0-9_-]", "_");
+        }
+        return metadata.getModifiedTime() != null ? "t" + metadata.getModifiedTime() : null;
+    }
+
+    /**
+     * Passes a Drive download through to the caller, writing every byte read to a partial cache file.
+     */
+    private class FillingInputStream extends FilterInputStream {
+        private final String key;
+        private final Path partial;
+        private final long expectedSize;
+        private final CompletableFuture<Boolean> fill;
+        private OutputStream copy; // Null once the copy is finished or abandoned
+        private long copied;
+
+        FillingInputStream(InputStream download, OutputStream copy, String key, Path partial, long expectedSize,
+                           CompletableFuture<Boolean> fill) {
+            super(download);
+            this.copy = copy;
+            this.key = key;
+            this.partial = partial;
+            this.expectedSize = expectedSize;
+            this.fill = fill;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                copy(new byte[]{(byte) b}, 0, 1);
+            } else {
+                finish();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                copy(buffer, offset, read);
+            } else if (read < 0) {
+                finish();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            abandon(); // Skipped bytes never reach the copy.
+            return super.skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon();
+            }
+        }
+
+        private void copy(byte[] buffer, int offset, int length) {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.write(buffer, offset, length);
+                copied += length;
+            } catch (IOException e) {
+                System.err.println("Could not cache " + key + ": " + e.getMessage());
+                abandon();
+            }
+        }
+
+        private void finish() {
+            if (copy == null) {
+                return;
+            }
+            if (copied != expectedSize) {
+                abandon(); // The stored size is the version's size; anything else is not the whole file.
+                return;
+            }
+            try {
+                copy.close();
+                copy = null;
+                disk.publish(key, partial, copied);
+                disk.endFill(key, fill, true);
+            } catch (IOException e) {
+                System.err.println("Could not cache " + key + ": " + e.getMessage());
+                abandon();
+            }
+        }
+
+        private void abandon() {
+            if (fill.isDone()) {
+                return;
+            }
+            try {
+                if (copy != null) {
+                    copy.close();
+                }
+            } catch (IOException e) {
+                // The partial file is deleted below either way.
+            }
+            copy = null;
+            disk.deleteQuietly(partial);
+            disk.endFill(key, fill, false);
+        }
+    }
+}
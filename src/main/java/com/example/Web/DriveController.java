@@ -1,24 +1,64 @@
 package com.example.Web;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.EOFException;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/drive")
 public class DriveController {
 
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+    private static final String DEDUPLICATED_HEADER = "X-Upload-Deduplicated";
+    private static final MediaType CSV_MEDIA_TYPE = MediaType.parseMediaType("text/csv");
+
     private final GoogleDriveService googleDriveService;
+    private final UploadStagingQueue uploadQueue;
+    private final SalesAggregator salesAggregator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${google.drive.batch.max-files:100}")
+    private int maxBatchFiles;
+
+    @Value("${google.drive.bulk.max-items:1000}")
+    private int maxBulkItems;
 
-    public DriveController(GoogleDriveService googleDriveService) {
+    public DriveController(GoogleDriveService googleDriveService, UploadStagingQueue uploadQueue,
+                           SalesAggregator salesAggregator, ObjectMapper objectMapper) {
         this.googleDriveService = googleDriveService;
+        this.uploadQueue = uploadQueue;
+        this.salesAggregator = salesAggregator;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -31,6 +71,8 @@ public class DriveController {
      * @param brand The selected brand (e.g., "Bryco").
      * @param fromDate The start date (YYYY-MM-DD).
      * @param toDate The end date (YYYY-MM-DD).
+     * @param async If true, the file is only staged on local disk and 202 Accepted is returned with a
+     *              job ID right away; the upload to Drive happens in the background (see {@link #getUploadJob}).
      * @return ResponseEntity with success message or error.
      */
     @PostMapping("/upload")
@@ -41,15 +83,20 @@ public class DriveController {
             @RequestParam("country") String country,
             @RequestParam("brand") String brand,
             @RequestParam("fromDate") String fromDate,
-            @RequestParam("toDate") String toDate) {
+            @RequestParam("toDate") String toDate,
+            @RequestParam(value = "async", defaultValue = "false") boolean async) {
         try {
-            String fileId = googleDriveService.uploadSalesDataFile(file, month, market, country, brand, fromDate, toDate);
+            if (async) {
+                return queueUpload(file, month, market, country, brand, fromDate, toDate);
+            }
+            UploadResult result = googleDriveService.uploadSalesDataFile(file, month, market, country, brand, fromDate, toDate);
             System.out.println(month);
-            return new ResponseEntity<>("File uploaded and organized successfully. Google Drive File ID: " + fileId, HttpStatus.OK);
-        } catch (IOException e) {
-            // Log the exception for debugging purposes
+            return uploaded(result);
+        } catch (ResumableUploadException e) {
             e.printStackTrace();
-            return new ResponseEntity<>("Failed to upload file: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            return resumeHint(e);
+        } catch (IOException e) {
+            return failure(e, "Failed to upload file: " + e.getMessage());
         } catch (Exception e) {
             // Catch any other unexpected exceptions
             e.printStackTrace();
@@ -57,26 +104,332 @@ public class DriveController {
         }
     }
 
-    // Existing methods (keep as is for now)
-    // ---
+    /**
+     * Uploads many files in one request. Each of month/market/country/brand/fromDate/toDate is sent
+     * either once (applied to every file) or once per file, in the same order as the files.
+     * Files are uploaded in parallel and each gets its own result.
+     *
+     * @return 200 if every file was uploaded, otherwise 207 Multi-Status with per-file errors.
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<List<BatchUploadResult>> uploadSalesDataBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("month") List<String> months,
+            @RequestParam("market") List<String> markets,
+            @RequestParam("country") List<String> countries,
+            @RequestParam("brand") List<String> brands,
+            @RequestParam("fromDate") List<String> fromDates,
+            @RequestParam("toDate") List<String> toDates) {
+        if (files.isEmpty() || files.size() > maxBatchFiles) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<List<String>> fields = List.of(months, markets, countries, brands, fromDates, toDates);
+        if (fields.stream().anyMatch(values -> values.size() != 1 && values.size() != files.size())) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<SalesUploadRequest> uploads = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            uploads.add(new SalesUploadRequest(files.get(i), valueAt(months, i), valueAt(markets, i),
+                    valueAt(countries, i), valueAt(brands, i), valueAt(fromDates, i), valueAt(toDates, i)));
+        }
+        List<BatchUploadResult> results = googleDriveService.uploadSalesDataFiles(uploads);
+        boolean allUploaded = results.stream().allMatch(BatchUploadResult::isSuccess);
+        return new ResponseEntity<>(results, allUploaded ? HttpStatus.OK : HttpStatus.MULTI_STATUS);
+    }
+
+    /**
+     * Describes a finished upload; the {@value #DEDUPLICATED_HEADER} header tells clients whether an
+     * existing identical file was returned instead of a new one.
+     */
+    private static ResponseEntity<String> uploaded(UploadResult result) {
+        String message;
+        if (result.isDeduplicated()) {
+            message = "Identical file already exists in the target folder; upload skipped. Google Drive File ID: ";
+        } else if (result.isReplaced()) {
+            message = "Existing file with the same name was replaced. Google Drive File ID: ";
+        } else {
+            message = "File uploaded and organized successfully. Google Drive File ID: ";
+        }
+        return ResponseEntity.ok()
+                .header(DEDUPLICATED_HEADER, String.valueOf(result.isDeduplicated()))
+                .body(message + result.getFileId());
+    }
+
+    private ResponseEntity<String> queueUpload(MultipartFile file, String month, String market, String country,
+                                               String brand, String fromDate, String toDate) throws IOException {
+        if (!uploadQueue.isEnabled()) {
+            return new ResponseEntity<>("Asynchronous uploads are disabled.", HttpStatus.BAD_REQUEST);
+        }
+        UploadJob job = uploadQueue.submit(file, month, market, country, brand, fromDate, toDate);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/drive/upload/jobs/" + job.getJobId()))
+                .body("File staged for upload. Job ID: " + job.getJobId());
+    }
+
+    /**
+     * Reports the progress of an upload accepted with {@code async=true}: QUEUED, UPLOADING, DONE
+     * (with the Drive file ID) or FAILED (with the reason).
+     */
+    @GetMapping("/upload/jobs/{jobId}")
+    public ResponseEntity<UploadJob> getUploadJob(@PathVariable String jobId) {
+        UploadJob job = uploadQueue.getJob(jobId);
+        return job != null ? new ResponseEntity<>(job, HttpStatus.OK) : new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
+    private static String valueAt(List<String> values, int index) {
+        return values.size() == 1 ? values.get(0) : values.get(index);
+    }
+
+    /**
+     * Streams a CSV from the raw request body straight into a resumable Drive upload. Unlike
+     * {@code /upload}, the body is never staged as a multipart temp file, and at most one
+     * upload chunk is held in memory.
+     *
+     * @param request The servlet request whose body (Content-Type: text/csv) is the file content.
+     * @return ResponseEntity with the file ID, or 503 with the session to resume if the transfer was interrupted.
+     */
+    @PostMapping(value = "/upload/stream", consumes = "text/csv")
+    public ResponseEntity<String> uploadSalesDataStream(
+            HttpServletRequest request,
+            @RequestParam("month") String month,
+            @RequestParam("market") String market,
+            @RequestParam("country") String country,
+            @RequestParam("brand") String brand,
+            @RequestParam("fromDate") String fromDate,
+            @RequestParam("toDate") String toDate) {
+        try {
+            UploadResult result = googleDriveService.uploadSalesDataStream(request.getInputStream(), request.getContentLengthLong(),
+                    month, market, country, brand, fromDate, toDate);
+            return uploaded(result);
+        } catch (ResumableUploadException e) {
+            e.printStackTrace();
+            return resumeHint(e);
+        } catch (IOException e) {
+            return failure(e, "Failed to upload file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Continues an interrupted resumable upload. The body must contain the file from byte {@code offset} onwards.
+     */
+    @PutMapping("/upload/resumable/{sessionId}")
+    public ResponseEntity<String> resumeUpload(
+            @PathVariable String sessionId,
+            @RequestParam("offset") long offset,
+            HttpServletRequest request) {
+        try {
+            return uploaded(googleDriveService.resumeUpload(sessionId, offset, request.getInputStream()));
+        } catch (ResumableUploadException e) {
+            e.printStackTrace();
+            return resumeHint(e);
+        } catch (FileNotFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (IOException e) {
+            return failure(e, "Failed to resume upload: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/upload/resumable/{sessionId}")
+    public ResponseEntity<UploadSessionStatus> getUploadStatus(@PathVariable String sessionId) {
+        try {
+            return new ResponseEntity<>(googleDriveService.getUploadStatus(sessionId), HttpStatus.OK);
+        } catch (FileNotFoundException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (IOException e) {
+            return failure(e, null);
+        }
+    }
+
+    private static ResponseEntity<String> resumeHint(ResumableUploadException e) {
+        return new ResponseEntity<>("Upload interrupted. Resume with PUT /api/drive/upload/resumable/" + e.getSessionId()
+                + "?offset=" + e.getCommittedBytes() + " (" + e.getMessage() + ")", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Streams a file to the client without buffering it in memory. Files in the local content cache
+     * are served from disk with {@link FileChannel#transferTo}; everything else is streamed from Drive
+     * through a fixed-size buffer. A full download that misses is copied into the cache on the way,
+     * and a range that misses fetches only that range from Drive. A single-range
+     * {@code Range} header is answered with 206 Partial Content; multi-range requests are served as
+     * the full file. Files stored gzip-compressed are sent as-is with {@code Content-Encoding: gzip}
+     * to clients that accept it, and decompressed on the fly (without ranges) for the rest.
+     *
+     * @param fileId The Google Drive file ID.
+     * @param requestHeaders The request headers, used for {@code Range} and {@code Accept-Encoding}.
+     * @return ResponseEntity streaming the file content, with its real name, type and length.
+     */
     @GetMapping("/download/{fileId}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String fileId) {
+    public ResponseEntity<StreamingResponseBody> downloadFile(
+            @PathVariable String fileId,
+            @RequestHeader HttpHeaders requestHeaders) {
         try {
-            byte[] fileContent = googleDriveService.downloadFile(fileId);
+            DriveFileMetadata metadata = googleDriveService.getFileMetadata(fileId);
+            Long size = metadata.getSize();
+
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM); // Generic binary type
+            headers.setContentType(downloadContentType(metadata.getMimeType()));
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename(DriveCompression.decodedName(metadata), StandardCharsets.UTF_8)
+                    .build());
 
-            // OPTIONAL: Fetch actual file name from Drive to set correct Content-Disposition
-            // For now, using a generic name or assuming you can get it from an earlier list operation
-            headers.setContentDispositionFormData("attachment", "downloaded_file");
+            if (DriveCompression.isGzip(metadata)) {
+                headers.setContentType(CSV_MEDIA_TYPE);
+                headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+                if (!acceptsGzip(requestHeaders)) {
+                    // Decompressed on the fly; the decoded length is unknown, so no ranges or Content-Length.
+                    InputStream in = googleDriveService.openDecodedStream(metadata);
+                    return new ResponseEntity<>(out -> copy(in, out), headers, HttpStatus.OK);
+                }
+                // The stored gzip bytes are the response as-is; ranges below apply to them.
+                headers.set(HttpHeaders.CONTENT_ENCODING, DriveCompression.GZIP);
+            }
 
-            return new ResponseEntity<>(fileContent, headers, HttpStatus.OK);
-        } catch (IOException e) {
+            List<HttpRange> ranges;
+            try {
+                ranges = requestHeaders.getRange();
+            } catch (IllegalArgumentException e) {
+                ranges = Collections.emptyList(); // Malformed Range headers are ignored, per RFC 9110
+            }
+
+            if (size == null) {
+                // Google-native documents have no byte size, so ranges cannot be honoured.
+                InputStream in = googleDriveService.openDownloadStream(fileId, -1, -1);
+                return new ResponseEntity<>(out -> copy(in, out), headers, HttpStatus.OK);
+            }
+
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                long start;
+                long end;
+                try {
+                    start = range.getRangeStart(size);
+                    end = range.getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                }
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                headers.setContentLength(end - start + 1);
+                FileChannel cached = googleDriveService.openCachedContentIfPresent(metadata, end - start + 1);
+                if (cached != null) {
+                    return new ResponseEntity<>(out -> transfer(cached, start, end - start + 1, out), headers, HttpStatus.PARTIAL_CONTENT);
+                }
+                // Only the range is fetched on a miss; a later full download fills the cache.
+                InputStream in = googleDriveService.openDownloadStream(fileId, start, end);
+                return new ResponseEntity<>(out -> copy(in, out), headers, HttpStatus.PARTIAL_CONTENT);
+            }
+
+            headers.setContentLength(size);
+            FileChannel cached = googleDriveService.openCachedContentIfPresent(metadata, size);
+            if (cached != null) {
+                return new ResponseEntity<>(out -> transfer(cached, 0, size, out), headers, HttpStatus.OK);
+            }
+            InputStream in = googleDriveService.openCachingDownloadStream(metadata);
+            return new ResponseEntity<>(out -> copy(in, out), headers, HttpStatus.OK);
+        } catch (GoogleJsonResponseException e) {
             e.printStackTrace(); // Log for debugging
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (IOException e) {
+            return failure(e, null);
+        }
+    }
+
+    /**
+     * Whether the client listed gzip (or *) in Accept-Encoding without ruling it out with q=0.
+     */
+    private static boolean acceptsGzip(HttpHeaders requestHeaders) {
+        for (String value : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                String name = parts[0].trim();
+                if (!DriveCompression.GZIP.equalsIgnoreCase(name) && !"*".equals(name)) {
+                    continue;
+                }
+                boolean refused = false;
+                for (int i = 1; i < parts.length; i++) {
+                    refused |= parts[i].trim().matches("q=0(\\.0*)?");
+                }
+                return !refused;
+            }
+        }
+        return false;
+    }
+
+    private static MediaType downloadContentType(String mimeType) {
+        try {
+            return mimeType != null ? MediaType.parseMediaType(mimeType) : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    /**
+     * Sends {@code count} bytes of a cached file starting at {@code position}, letting the JDK pick
+     * its most direct path from the file channel instead of copying through our own buffer.
+     */
+    private static void transfer(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        try (FileChannel source = channel) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long sent = 0;
+            while (sent < count) {
+                long written = source.transferTo(position + sent, count - sent, target);
+                if (written <= 0) {
+                    throw new EOFException("Cached file ended after " + sent + " of " + count + " bytes");
+                }
+                sent += written;
+            }
+            out.flush();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try (InputStream source = in) {
+            byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Streams every file of a month/market folder (all countries), or of one country within it, as a
+     * single ZIP. Entries are sent as they are fetched, so the download starts before the last file
+     * has been read from Drive.
+     *
+     * @param month The month (e.g., "03" for March).
+     * @param market The market (e.g., "Amazon").
+     * @param country The country (e.g., "US"); omit to export every country of the market.
+     * @return ResponseEntity streaming the ZIP, or 404 if a folder does not exist.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFolder(
+            @RequestParam("month") String month,
+            @RequestParam("market") String market,
+            @RequestParam(value = "country", required = false) String country) {
+        try {
+            List<FolderExportEntry> entries = googleDriveService.planFolderExport(month, market, country);
+            String archiveName = "sales-" + month + "-" + market + (country != null && !country.isEmpty() ? "-" + country : "") + ".zip";
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename(archiveName, StandardCharsets.UTF_8)
+                    .build());
+            return new ResponseEntity<>(out -> googleDriveService.writeFolderExport(entries, out), headers, HttpStatus.OK);
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IOException e) {
+            return failure(e, null);
         }
     }
 
+    /**
+     * Lists all files in a folder (the root folder by default), following every Drive page.
+     */
     @GetMapping("/list")
     public ResponseEntity<List<DriveFileMetadata>> listFilesInFolder(
             @RequestParam(value = "folderId", required = false) String folderId) {
@@ -84,8 +437,115 @@ public class DriveController {
             List<DriveFileMetadata> files = googleDriveService.listFilesInFolder(folderId);
             return new ResponseEntity<>(files, HttpStatus.OK);
         } catch (IOException e) {
-            e.printStackTrace(); // Log for debugging
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+            return failure(e, null);
+        }
+    }
+
+    /**
+     * Lists one page of a folder. Pass the returned nextPageToken as pageToken to fetch the next page.
+     *
+     * @param pageSize Files per page (1-1000).
+     * @param pageToken Cursor from the previous page; omit for the first page.
+     */
+    @GetMapping("/list/page")
+    public ResponseEntity<DriveFilePage> listFilesInFolderPage(
+            @RequestParam(value = "folderId", required = false) String folderId,
+            @RequestParam(value = "pageSize", defaultValue = "100") int pageSize,
+            @RequestParam(value = "pageToken", required = false) String pageToken) {
+        try {
+            return new ResponseEntity<>(googleDriveService.listFilesInFolder(folderId, pageSize, pageToken), HttpStatus.OK);
+        } catch (IOException e) {
+            return failure(e, null);
+        }
+    }
+
+    /**
+     * Streams the whole folder listing, writing each file as its Drive page arrives instead of
+     * building the full list in memory.
+     *
+     * @param format "json" for a JSON array, or "ndjson" for one JSON object per line.
+     */
+    @GetMapping("/list/stream")
+    public ResponseEntity<StreamingResponseBody> streamFilesInFolder(
+            @RequestParam(value = "folderId", required = false) String folderId,
+            @RequestParam(value = "format", defaultValue = "json") String format) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        ObjectWriter writer = objectMapper.writerFor(DriveFileMetadata.class);
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter files = ndjson
+                    ? writer.withRootValueSeparator("\n").writeValues(out)
+                    : writer.writeValuesAsArray(out)) {
+                googleDriveService.forEachFileInFolder(folderId, GoogleDriveService.MAX_PAGE_SIZE, files::write);
+            }
+        };
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Searches uploaded sales files by brand, market, country, month and date range. Answered from
+     * the in-process metadata mirror, so it never calls Drive.
+     *
+     * @return The matching files, 400 for a month number outside 1-12, or 503 while the mirror is still loading.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<SalesFileEntry>> searchSalesFiles(
+            @RequestParam(value = "brand", required = false) String brand,
+            @RequestParam(value = "market", required = false) String market,
+            @RequestParam(value = "country", required = false) String country,
+            @RequestParam(value = "month", required = false) String month,
+            @RequestParam(value = "fromDate", required = false) String fromDate,
+            @RequestParam(value = "toDate", required = false) String toDate) {
+        List<SalesFileEntry> files;
+        try {
+            files = googleDriveService.searchSalesFiles(brand, market, country, month, fromDate, toDate);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (files == null) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(files, HttpStatus.OK);
+    }
+
+    /**
+     * Counts rows and sums CSV columns across the sales files matching the search filters, grouped
+     * by any of brand, market, country and month, e.g.
+     * {@code /aggregate?sum=units&groupBy=brand&market=Amazon&country=US&fromDate=2024-01-01&toDate=2024-03-31}.
+     * Rows outside fromDate..toDate are left out by their date column. Files are read from a local
+     * columnar cache, so only files new or changed since the last query are downloaded.
+     *
+     * @param sum Columns to sum (comma separated); omit to count rows only.
+     * @param groupBy Dimensions to group by (comma separated); omit for a single total.
+     * @return The totals, 400 for an unknown dimension, a malformed date or a bad month, or 503 while the mirror is still loading.
+     */
+    @GetMapping("/aggregate")
+    public ResponseEntity<SalesAggregation> aggregateSales(
+            @RequestParam(value = "sum", required = false) List<String> sum,
+            @RequestParam(value = "groupBy", required = false) List<String> groupBy,
+            @RequestParam(value = "brand", required = false) String brand,
+            @RequestParam(value = "market", required = false) String market,
+            @RequestParam(value = "country", required = false) String country,
+            @RequestParam(value = "month", required = false) String month,
+            @RequestParam(value = "fromDate", required = false) String fromDate,
+            @RequestParam(value = "toDate", required = false) String toDate) {
+        try {
+            List<SalesFileEntry> files = googleDriveService.searchSalesFiles(brand, market, country, month, fromDate, toDate);
+            if (files == null) {
+                return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            SalesAggregation aggregation = salesAggregator.aggregate(files,
+                    groupBy != null ? groupBy : Collections.emptyList(), sum != null ? sum : Collections.emptyList(),
+                    fromDate, toDate, googleDriveService::openDecodedStream);
+            return new ResponseEntity<>(aggregation, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            return failure(e, null);
         }
     }
 
@@ -97,8 +557,7 @@ public class DriveController {
             googleDriveService.renameFile(fileId, newName);
             return new ResponseEntity<>("File renamed successfully.", HttpStatus.OK);
         } catch (IOException e) {
-            e.printStackTrace(); // Log for debugging
-            return new ResponseEntity<>("Failed to rename file: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            return failure(e, "Failed to rename file: " + e.getMessage());
         }
     }
 
@@ -108,8 +567,84 @@ public class DriveController {
             googleDriveService.deleteFile(fileId);
             return new ResponseEntity<>("File deleted successfully.", HttpStatus.OK);
         } catch (IOException e) {
-            e.printStackTrace(); // Log for debugging
-            return new ResponseEntity<>("Failed to delete file: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            return failure(e, "Failed to delete file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Renames many files in a few round-trips by grouping them into Drive batch requests.
+     * Items that fail with a retryable status are re-sent on their own.
+     *
+     * @param renames JSON array of {@code {"fileId": ..., "newName": ...}}.
+     * @return Per-file results in request order; 200 if every file was renamed, otherwise 207 Multi-Status.
+     */
+    @PutMapping("/rename/batch")
+    public ResponseEntity<List<BulkOperationResult>> renameFiles(@RequestBody List<BulkRenameRequest> renames) {
+        if (renames.isEmpty() || renames.size() > maxBulkItems) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return bulkResponse(googleDriveService.renameFiles(renames));
+    }
+
+    /**
+     * Deletes many files in a few round-trips by grouping them into Drive batch requests.
+     * Items that fail with a retryable status are re-sent on their own.
+     *
+     * @param fileIds JSON array of Google Drive file IDs.
+     * @return Per-file results in request order; 200 if every file was deleted, otherwise 207 Multi-Status.
+     */
+    @PostMapping("/delete/batch")
+    public ResponseEntity<List<BulkOperationResult>> deleteFiles(@RequestBody List<String> fileIds) {
+        if (fileIds.isEmpty() || fileIds.size() > maxBulkItems) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return bulkResponse(googleDriveService.deleteFiles(fileIds));
+    }
+
+    private static ResponseEntity<List<BulkOperationResult>> bulkResponse(List<BulkOperationResult> results) {
+        boolean allSucceeded = results.stream().allMatch(BulkOperationResult::isSuccess);
+        return new ResponseEntity<>(results, allSucceeded ? HttpStatus.OK : HttpStatus.MULTI_STATUS);
+    }
+
+    /**
+     * Exposes internal counters, e.g. how many Drive round-trips the folder cache saved.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("folderCache", googleDriveService.getFolderCacheStats());
+        stats.put("rateLimiter", googleDriveService.getRateLimiterStats());
+        stats.put("metadataMirror", googleDriveService.getMirrorStats());
+        stats.put("contentCache", googleDriveService.getContentCacheStats());
+        stats.put("dedupIndex", googleDriveService.getDedupIndexStats());
+        stats.put("uploadQueue", uploadQueue.getStats());
+        stats.put("aggregationCache", salesAggregator.getStats());
+        return new ResponseEntity<>(stats, HttpStatus.OK);
+    }
+
+    /**
+     * Maps a failed Drive call to a response. Throttling becomes 503 with Retry-After so clients
+     * back off instead of seeing a server error, and a CSV rejected by validation becomes 422;
+     * anything else is logged and returned as 500.
+     */
+    private static <T> ResponseEntity<T> failure(IOException e, T body) {
+        if (e instanceof ResumableUploadException) {
+            // Uploads larger than one chunk go through a resumable session on every path.
+            ResumableUploadException interrupted = (ResumableUploadException) e;
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .location(URI.create("/api/drive/upload/resumable/" + interrupted.getSessionId()
+                            + "?offset=" + interrupted.getCommittedBytes()))
+                    .body(body);
+        }
+        if (e instanceof SalesCsvValidationException) {
+            return new ResponseEntity<>(body, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        if (e instanceof DriveRateLimitException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(((DriveRateLimitException) e).getRetryAfterSeconds()))
+                    .body(body);
         }
+        e.printStackTrace(); // Log for debugging
+        return new ResponseEntity<>(body, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
@@ -3,10 +3,13 @@ package com.example.Web;
 
 
 
+import com.google.api.services.drive.model.File;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * Data Transfer Object (DTO) to encapsulate metadata of a Google Drive file.
  * Used for clearer API responses and data handling within the service.
@@ -25,6 +28,8 @@ public class DriveFileMetadata {
     private String webViewLink;    // A link for opening the file in a browser (e.g., Google Docs viewer)
     private Long createdTime; // Timestamp when the file was created (Unix epoch milliseconds)
     private Long modifiedTime; // Timestamp when the file was last modified (Unix epoch milliseconds)
+    private String md5Checksum; // MD5 of the content, for files with binary content (null for folders and Google Docs)
+    private Map<String, String> appProperties; // Properties private to this app, e.g. the CSV statistics stored at upload
     
     // Explicit constructor to ensure resolution.
     // This provides a fallback if @AllArgsConstructor isn't processed correctly by some IDE/setup.
@@ -39,4 +44,34 @@ public class DriveFileMetadata {
         this.createdTime = createdTime;
         this.modifiedTime = modifiedTime;
     }
+
+    /**
+     * Copies the fields we expose from a Drive API file resource.
+     */
+    public static DriveFileMetadata from(File file) {
+        DriveFileMetadata metadata = new DriveFileMetadata(
+                file.getId(),
+                file.getName(),
+                file.getMimeType(),
+                file.getSize(),
+                file.getWebContentLink(),
+                file.getWebViewLink(),
+                file.getCreatedTime() != null ? file.getCreatedTime().getValue() : null,
+                file.getModifiedTime() != null ? file.getModifiedTime().getValue() : null
+        );
+        metadata.setMd5Checksum(file.getMd5Checksum());
+        metadata.setAppProperties(file.getAppProperties());
+        return metadata;
+    }
+
+    /**
+     * Returns a copy with every field kept except the name.
+     */
+    public DriveFileMetadata withName(String newName) {
+        DriveFileMetadata copy = new DriveFileMetadata(id, newName, mimeType, size, webContentLink, webViewLink,
+                createdTime, modifiedTime);
+        copy.setMd5Checksum(md5Checksum);
+        copy.setAppProperties(appProperties);
+        return copy;
+    }
 }
@@ -0,0 +1,18 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a folder listing plus the cursor for the next page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriveFilePage {
+    private List<DriveFileMetadata> files; // Files on this page
+    private String nextPageToken; // Pass back as pageToken to get the next page; null on the last page
+}
@@ -0,0 +1,188 @@
+package com.example.Web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches Drive folder IDs by (parent ID, folder name) so that the month/market/country
+ * folder chain used by uploads is resolved once instead of on every request.
+ *
+ * Entries expire after a configurable TTL and the least recently used entry is evicted
+ * once the cache is full. Concurrent lookups of the same folder are collapsed into a
+ * single Drive lookup/create, which also stops parallel uploads to a new month from
+ * creating duplicate folders.
+ */
+@Component
+public class DriveFolderCache {
+
+    /**
+     * Performs the actual Drive lookup (and create, if missing) for a cache miss.
+     */
+    @FunctionalInterface
+    public interface FolderLoader {
+        String load() throws IOException;
+    }
+
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    // Access-ordered so that iteration order is least recently used first.
+    private final Map<String, CachedFolder> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedLookups = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DriveFolderCache(
+            @Value("${google.drive.folder-cache.ttl:30m}") Duration ttl,
+            @Value("${google.drive.folder-cache.max-entries:1000}") int maxEntries) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedFolder> eldest) {
+                if (size() > DriveFolderCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the ID of the folder {@code folderName} under {@code parentId}, calling the
+     * loader only when the folder is not cached and no other thread is already resolving it.
+     */
+    public String resolve(String parentId, String folderName, FolderLoader loader) throws IOException {
+        String key = key(parentId, folderName);
+
+        String cached = getIfFresh(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, lookup);
+        if (existing != null) {
+            sharedLookups.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            // Another thread may have finished the lookup between our cache check and putIfAbsent.
+            cached = getIfFresh(key);
+            if (cached == null) {
+                misses.incrementAndGet();
+                cached = loader.load();
+                put(key, cached);
+            } else {
+                hits.incrementAndGet();
+            }
+            lookup.complete(cached);
+            return cached;
+        } catch (IOException | RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, lookup);
+        }
+    }
+
+    /**
+     * Drops a cached folder, e.g. after Drive reports that it no longer exists.
+     */
+    public void invalidate(String parentId, String folderName) {
+        synchronized (entries) {
+            entries.remove(key(parentId, folderName));
+        }
+    }
+
+    /**
+     * Returns the cached folder ID without loading it or touching the hit/miss counters.
+     */
+    public String peek(String parentId, String folderName) {
+        return getIfFresh(key(parentId, folderName));
+    }
+
+    /**
+     * Hit/miss counters. Every hit or shared lookup is one or two Drive round-trips saved.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("sharedLookups", sharedLookups.get());
+        stats.put("evictions", evictions.get());
+        synchronized (entries) {
+            stats.put("size", (long) entries.size());
+        }
+        return stats;
+    }
+
+    private String getIfFresh(String key) {
+        synchronized (entries) {
+            CachedFolder folder = entries.get(key);
+            if (folder == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= folder.expiresAt) {
+                entries.remove(key);
+                return null;
+            }
+            return folder.id;
+        }
+    }
+
+    private void put(String key, String folderId) {
+        synchronized (entries) {
+            entries.put(key, new CachedFolder(folderId, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    private static String await(CompletableFuture<String> lookup) throws IOException {
+        try {
+            return lookup.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for folder lookup");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                // Rethrown as is, so waiters see the same rate-limit or 404 errors as the leader.
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static String key(String parentId, String folderName) {
+        return parentId + "/" + folderName;
+    }
+
+    private static final class CachedFolder {
+        private final String id;
+        private final long expiresAt;
+
+        private CachedFolder(String id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
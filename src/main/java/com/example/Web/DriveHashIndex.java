@@ -0,0 +1,240 @@
+package com.example.Web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Remembers the MD5 checksums and names of the files in each upload folder, so deduplicating an
+ * upload does not need a Drive list call per file. A folder is listed once (from the metadata
+ * mirror when it is ready), then kept current by recording our own uploads and forgetting files we
+ * rename or delete; entries expire after a TTL to pick up changes made outside this service.
+ * The least recently used folders are dropped once {@code max-folders} is reached.
+ *
+ * All reads and updates of the indexes happen under one lock. Concurrent uploads to a folder that is
+ * not indexed yet share a single listing, and files recorded or forgotten while it runs are applied
+ * to the new index before it is published.
+ */
+@Component
+public class DriveHashIndex {
+
+    /**
+     * Lists the files of a folder whose index is missing or expired.
+     */
+    @FunctionalInterface
+    public interface FolderLister {
+        List<DriveFileMetadata> list(String folderId) throws IOException;
+    }
+
+    private final long ttlMillis;
+    private final int maxFolders;
+
+    // Access-ordered so that iteration order is least recently used first.
+    private final Map<String, FolderIndex> folders;
+    // Folders being listed; guarded by the lock on folders.
+    private final Map<String, FolderLoad> loading = new HashMap<>();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong duplicatesFound = new AtomicLong();
+    private final AtomicLong folderLoads = new AtomicLong();
+
+    public DriveHashIndex(
+            @Value("${google.drive.upload.dedup-index.ttl:10m}") Duration ttl,
+            @Value("${google.drive.upload.dedup-index.max-folders:500}") int maxFolders) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxFolders = maxFolders;
+        this.folders = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FolderIndex> eldest) {
+                return size() > DriveHashIndex.this.maxFolders;
+            }
+        };
+    }
+
+    /**
+     * Returns a file in the folder with this name and MD5 checksum, or null if there is none. The same
+     * bytes under another name (another brand or date range) are a different report, not a duplicate.
+     *
+     * @param excludeId A file that does not count as a duplicate, e.g. the one just uploaded; may be null.
+     */
+    public DriveFileMetadata findByHash(String folderId, String md5, String name, String excludeId, FolderLister lister)
+            throws IOException {
+        lookups.incrementAndGet();
+        FolderIndex index = folder(folderId, lister);
+        DriveFileMetadata match = null;
+        synchronized (folders) {
+            for (DriveFileMetadata file : index.byHash.getOrDefault(md5, List.of())) {
+                if (!file.getId().equals(excludeId) && name.equals(file.getName())) {
+                    match = file;
+                    break;
+                }
+            }
+        }
+        if (match != null) {
+            duplicatesFound.incrementAndGet();
+        }
+        return match;
+    }
+
+    /**
+     * Returns the file in the folder with this name, or null if there is none.
+     */
+    public DriveFileMetadata findByName(String folderId, String name, FolderLister lister) throws IOException {
+        FolderIndex index = folder(folderId, lister);
+        synchronized (folders) {
+            return index.byName.get(name);
+        }
+    }
+
+    /**
+     * Adds a file we just uploaded (or replaced) to the folder's index, if the folder is indexed or being listed.
+     */
+    public void record(String folderId, DriveFileMetadata file) {
+        Consumer<FolderIndex> update = index -> {
+            index.remove(file.getId());
+            index.add(file);
+        };
+        synchronized (folders) {
+            FolderIndex index = folders.get(folderId);
+            if (index != null) {
+                update.accept(index);
+            }
+            FolderLoad load = loading.get(folderId);
+            if (load != null) {
+                load.updates.add(update);
+            }
+        }
+    }
+
+    /**
+     * Drops a file from every folder index, e.g. after it was renamed, deleted, or found to be stale.
+     */
+    public void forget(String fileId) {
+        synchronized (folders) {
+            for (FolderIndex index : folders.values()) {
+                index.remove(fileId);
+            }
+            for (FolderLoad load : loading.values()) {
+                load.updates.add(index -> index.remove(fileId));
+            }
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("lookups", lookups.get());
+        stats.put("duplicatesFound", duplicatesFound.get());
+        stats.put("folderLoads", folderLoads.get());
+        synchronized (folders) {
+            stats.put("folders", (long) folders.size());
+        }
+        return stats;
+    }
+
+    private FolderIndex folder(String folderId, FolderLister lister) throws IOException {
+        FolderLoad load;
+        boolean leader = false;
+        synchronized (folders) {
+            FolderIndex index = folders.get(folderId);
+            if (index != null && System.currentTimeMillis() < index.expiresAt) {
+                return index;
+            }
+            load = loading.get(folderId);
+            if (load == null) {
+                load = new FolderLoad();
+                loading.put(folderId, load);
+                leader = true;
+            }
+        }
+        if (!leader) {
+            return await(load.index);
+        }
+
+        try {
+            folderLoads.incrementAndGet();
+            FolderIndex index = new FolderIndex(System.currentTimeMillis() + ttlMillis);
+            for (DriveFileMetadata file : lister.list(folderId)) {
+                if (!DriveMetadataMirror.FOLDER_MIME_TYPE.equals(file.getMimeType())) {
+                    index.add(file);
+                }
+            }
+            synchronized (folders) {
+                // The listing may predate uploads, renames and deletes made while it ran.
+                load.updates.forEach(update -> update.accept(index));
+                folders.put(folderId, index);
+                loading.remove(folderId);
+            }
+            load.index.complete(index);
+            return index;
+        } catch (IOException | RuntimeException e) {
+            synchronized (folders) {
+                loading.remove(folderId);
+            }
+            load.index.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static FolderIndex await(CompletableFuture<FolderIndex> load) throws IOException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a folder listing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A folder listing in progress, and the index changes made while it runs.
+     */
+    private static class FolderLoad {
+        final CompletableFuture<FolderIndex> index = new CompletableFuture<>();
+        final List<Consumer<FolderIndex>> updates = new ArrayList<>();
+    }
+
+    private static class FolderIndex {
+        final long expiresAt;
+        // Several files in a folder can share content, e.g. ones uploaded with dedup off.
+        final Map<String, List<DriveFileMetadata>> byHash = new HashMap<>();
+        final Map<String, DriveFileMetadata> byName = new HashMap<>();
+
+        FolderIndex(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        void add(DriveFileMetadata file) {
+            if (file.getMd5Checksum() != null) {
+                byHash.computeIfAbsent(file.getMd5Checksum(), md5 -> new ArrayList<>()).add(file);
+            }
+            if (file.getName() != null) {
+                byName.put(file.getName(), file);
+            }
+        }
+
+        void remove(String fileId) {
+            byHash.values().removeIf(files -> files.removeIf(file -> fileId.equals(file.getId())) && files.isEmpty());
+            byName.values().removeIf(file -> fileId.equals(file.getId()));
+        }
+    }
+}
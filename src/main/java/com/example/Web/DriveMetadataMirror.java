@@ -0,0 +1,375 @@
+package com.example.Web;
+
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory copy of the metadata of every file and folder under the root folder.
+ *
+ * The tree is crawled once at startup and then kept current by polling the Drive Changes feed,
+ * so folder listings and searches can be answered without calling Drive. Until the first crawl
+ * has finished (or when the mirror is disabled) callers fall back to querying Drive directly.
+ */
+@Component
+public class DriveMetadataMirror {
+
+    static final String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
+
+    private static final String FILE_FIELDS =
+            "id, name, mimeType, size, md5Checksum, webContentLink, webViewLink, createdTime, modifiedTime, parents, trashed";
+
+    private final Drive drive;
+    private final DriveRequestExecutor driveCalls;
+    private final String rootFolderId;
+    private final boolean enabled;
+    private final Duration pollInterval;
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> children = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile String pageToken;
+    private volatile long lastSyncTime;
+    private ScheduledExecutorService scheduler;
+
+    public DriveMetadataMirror(
+            Drive drive,
+            DriveRequestExecutor driveCalls,
+            @Value("${google.drive.root-folder-id}") String rootFolderId,
+            @Value("${google.drive.mirror.enabled:true}") boolean enabled,
+            @Value("${google.drive.mirror.poll-interval:30s}") Duration pollInterval) {
+        this.drive = drive;
+        this.driveCalls = driveCalls;
+        this.rootFolderId = rootFolderId;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "drive-metadata-mirror");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void refresh() {
+        try {
+            if (ready) {
+                poll();
+            } else {
+                bootstrap();
+            }
+        } catch (Exception e) {
+            // Keep the schedule alive; the next run retries from the last saved page token.
+            System.err.println("Drive metadata mirror refresh failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crawls the whole tree under the root folder. The change page token is taken before the
+     * crawl, so anything modified while crawling is replayed by the next {@link #poll()}.
+     */
+    public synchronized void bootstrap() throws IOException {
+        String startPageToken = driveCalls.execute("changes.getStartPageToken", () -> drive.changes().getStartPageToken()
+                .setSupportsAllDrives(true)
+                .execute())
+                .getStartPageToken();
+
+        nodes.clear();
+        children.clear();
+        children.put(rootFolderId, ConcurrentHashMap.newKeySet());
+        crawl(rootFolderId);
+
+        pageToken = startPageToken;
+        lastSyncTime = System.currentTimeMillis();
+        ready = true;
+    }
+
+    /**
+     * Applies every change Drive has recorded since the last bootstrap or poll.
+     */
+    public synchronized void poll() throws IOException {
+        if (!ready) {
+            return;
+        }
+        String token = pageToken;
+        while (token != null) {
+            String changesToken = token;
+            ChangeList changes = driveCalls.execute("changes.list", () -> drive.changes().list(changesToken)
+                    .setSpaces("drive")
+                    .setIncludeItemsFromAllDrives(true)
+                    .setSupportsAllDrives(true)
+                    .setPageSize(GoogleDriveService.MAX_PAGE_SIZE)
+                    .setFields("nextPageToken, newStartPageToken, changes(fileId, removed, file(" + FILE_FIELDS + "))")
+                    .execute());
+            if (changes.getChanges() != null) {
+                for (Change change : changes.getChanges()) {
+                    apply(change);
+                }
+            }
+            if (changes.getNewStartPageToken() != null) {
+                pageToken = changes.getNewStartPageToken();
+                token = null;
+            } else {
+                token = changes.getNextPageToken();
+                pageToken = token;
+            }
+        }
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the mirrored contents of a folder, or null if the mirror cannot answer (not yet
+     * bootstrapped, or the folder is not under the root folder).
+     */
+    public List<DriveFileMetadata> listChildren(String folderId) {
+        if (!ready) {
+            return null;
+        }
+        Set<String> ids = children.get(folderId != null && !folderId.isEmpty() ? folderId : rootFolderId);
+        if (ids == null) {
+            return null;
+        }
+        return ids.stream()
+                .map(nodes::get)
+                .filter(Objects::nonNull)
+                .map(node -> node.metadata)
+                .sorted(Comparator.comparing(DriveFileMetadata::getName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Finds sales files by the month/market/country folders they live in and the brand and date
+     * range in their name. Every filter is optional; dates match files whose range overlaps
+     * [fromDate, toDate].
+     *
+     * @param month Month number ("1"-"12") or name ("January").
+     * @throws IllegalArgumentException if the month is a number outside 1-12.
+     */
+    public List<SalesFileEntry> search(String brand, String market, String country, String month,
+                                       String fromDate, String toDate) {
+        String monthName = month == null || month.isEmpty() || !month.chars().allMatch(Character::isDigit)
+                ? month
+                : monthName(month);
+
+        List<SalesFileEntry> matches = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            SalesFileEntry entry = toSalesFile(node);
+            if (entry == null
+                    || !matches(brand, entry.getBrand())
+                    || !matches(market, entry.getMarket())
+                    || !matches(country, entry.getCountry())
+                    || !matches(monthName, entry.getMonth())
+                    || (fromDate != null && !fromDate.isEmpty() && entry.getToDate().compareTo(fromDate) < 0)
+                    || (toDate != null && !toDate.isEmpty() && entry.getFromDate().compareTo(toDate) > 0)) {
+                continue;
+            }
+            matches.add(entry);
+        }
+        matches.sort(Comparator.comparing(SalesFileEntry::getFromDate).thenComparing(entry -> entry.getFile().getName()));
+        return matches;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("entries", nodes.size());
+        stats.put("lastSyncTime", lastSyncTime);
+        return stats;
+    }
+
+    /**
+     * Records a file or folder this service just created, so it is visible before the next poll.
+     */
+    public synchronized void recordCreated(File file, String parentId) {
+        if (ready && isTrackedFolder(parentId)) {
+            put(file, parentId);
+        }
+    }
+
+    public synchronized void recordRenamed(String fileId, String newName) {
+        Node node = nodes.get(fileId);
+        if (node != null) {
+            nodes.put(fileId, new Node(node.metadata.withName(newName), node.parentId));
+        }
+    }
+
+    public synchronized void recordDeleted(String fileId) {
+        remove(fileId);
+    }
+
+    private void crawl(String folderId) throws IOException {
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(folderId);
+        while (!pending.isEmpty()) {
+            String parentId = pending.poll();
+            String token = null;
+            do {
+                String listToken = token;
+                FileList page = driveCalls.execute("files.list", () -> drive.files().list()
+                        .setQ("'" + parentId + "' in parents and trashed = false")
+                        .setSpaces("drive")
+                        .setIncludeItemsFromAllDrives(true)
+                        .setSupportsAllDrives(true)
+                        .setPageSize(GoogleDriveService.MAX_PAGE_SIZE)
+                        .setPageToken(listToken)
+                        .setFields("nextPageToken, files(" + FILE_FIELDS + ")")
+                        .execute());
+                if (page.getFiles() != null) {
+                    for (File file : page.getFiles()) {
+                        put(file, parentId);
+                        if (FOLDER_MIME_TYPE.equals(file.getMimeType())) {
+                            pending.add(file.getId());
+                        }
+                    }
+                }
+                token = page.getNextPageToken();
+            } while (token != null);
+        }
+    }
+
+    private void apply(Change change) throws IOException {
+        File file = change.getFile();
+        if (Boolean.TRUE.equals(change.getRemoved()) || file == null || Boolean.TRUE.equals(file.getTrashed())) {
+            remove(change.getFileId());
+            return;
+        }
+        String parentId = file.getParents() == null ? null
+                : file.getParents().stream().filter(this::isTrackedFolder).findFirst().orElse(null);
+        if (parentId == null) {
+            remove(file.getId()); // Moved out of the tree, or never in it.
+            return;
+        }
+        boolean newFolder = FOLDER_MIME_TYPE.equals(file.getMimeType()) && !nodes.containsKey(file.getId());
+        put(file, parentId);
+        if (newFolder) {
+            // A folder moved in from elsewhere brings children the change feed will not report.
+            crawl(file.getId());
+        }
+    }
+
+    private boolean isTrackedFolder(String folderId) {
+        if (rootFolderId.equals(folderId)) {
+            return true;
+        }
+        Node node = nodes.get(folderId);
+        return node != null && FOLDER_MIME_TYPE.equals(node.metadata.getMimeType());
+    }
+
+    private void put(File file, String parentId) {
+        Node previous = nodes.put(file.getId(), new Node(DriveFileMetadata.from(file), parentId));
+        if (previous != null && !previous.parentId.equals(parentId)) {
+            Set<String> oldSiblings = children.get(previous.parentId);
+            if (oldSiblings != null) {
+                oldSiblings.remove(file.getId());
+            }
+        }
+        children.computeIfAbsent(parentId, id -> ConcurrentHashMap.newKeySet()).add(file.getId());
+        if (FOLDER_MIME_TYPE.equals(file.getMimeType())) {
+            children.computeIfAbsent(file.getId(), id -> ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    private void remove(String fileId) {
+        Node node = nodes.remove(fileId);
+        if (node == null) {
+            return;
+        }
+        Set<String> siblings = children.get(node.parentId);
+        if (siblings != null) {
+            siblings.remove(fileId);
+        }
+        Set<String> descendants = children.remove(fileId);
+        if (descendants != null) {
+            for (String childId : new ArrayList<>(descendants)) {
+                remove(childId);
+            }
+        }
+    }
+
+    private static String monthName(String monthNumber) {
+        try {
+            return Month.of(Integer.parseInt(monthNumber)).getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IllegalArgumentException("month '" + monthNumber + "' is not a month number (1-12)");
+        }
+    }
+
+    /**
+     * Builds a search entry for files laid out as root/month/market/country/brand-from_to.csv.
+     */
+    private SalesFileEntry toSalesFile(Node node) {
+        if (FOLDER_MIME_TYPE.equals(node.metadata.getMimeType())) {
+            return null;
+        }
+        SalesFileName name = SalesFileName.parse(node.metadata.getName());
+        Node countryFolder = nodes.get(node.parentId);
+        Node marketFolder = countryFolder != null ? nodes.get(countryFolder.parentId) : null;
+        Node monthFolder = marketFolder != null ? nodes.get(marketFolder.parentId) : null;
+        if (name == null || monthFolder == null || !rootFolderId.equals(monthFolder.parentId)) {
+            return null;
+        }
+        return new SalesFileEntry(node.metadata, monthFolder.metadata.getName(), marketFolder.metadata.getName(),
+                countryFolder.metadata.getName(), name.getBrand(), name.getFromDate(), name.getToDate());
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.isEmpty() || filter.equalsIgnoreCase(value);
+    }
+
+    private static final class Node {
+        private final DriveFileMetadata metadata;
+        private final String parentId;
+
+        private Node(DriveFileMetadata metadata, String parentId) {
+            this.metadata = metadata;
+            this.parentId = parentId;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.Web;
+
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer meters for Drive traffic, exported with everything else at {@code /actuator/prometheus}.
+ * <ul>
+ *   <li>{@code drive.calls}: one timer per Drive call type ({@code operation} tag, e.g. files.list.folder,
+ *       files.create.media, upload.chunk, files.get.media), tagged with {@code outcome} and HTTP {@code status}.</li>
+ *   <li>{@code drive.calls.retries} / {@code drive.calls.rejected}: retries and calls refused by the rate limiter.</li>
+ *   <li>{@code drive.upload.phase}: time spent per upload phase (folder_resolution, transfer), to see
+ *       where upload latency goes.</li>
+ *   <li>{@code drive.transfer.bytes} / {@code drive.transfer.throughput}: size and bytes per second of each
+ *       upload and download ({@code direction} tag).</li>
+ * </ul>
+ * Gauges for in-flight calls and the adaptive limits are registered by {@link DriveRequestExecutor}.
+ */
+@Component
+public class DriveMetrics {
+
+    private final MeterRegistry registry;
+
+    public DriveMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Records one Drive call.
+     *
+     * @param failure The exception the call failed with, or null if it succeeded.
+     */
+    public void recordCall(String operation, Timer.Sample sample, IOException failure) {
+        int status = failure == null ? 0 : statusOf(failure);
+        sample.stop(Timer.builder("drive.calls")
+                .description("Drive API calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome(failure, status))
+                .tag("status", failure == null ? "2xx" : status > 0 ? String.valueOf(status) : "none")
+                .register(registry));
+    }
+
+    public void recordRetry(String operation) {
+        counter("drive.calls.retries", "Drive API calls repeated after a retryable failure", operation).increment();
+    }
+
+    public void recordRejection(String operation) {
+        counter("drive.calls.rejected", "Drive API calls refused by the rate limiter", operation).increment();
+    }
+
+    public void recordUploadPhase(String phase, Timer.Sample sample) {
+        sample.stop(uploadPhaseTimer(phase));
+    }
+
+    /**
+     * Records a completed upload: the transfer phase time plus its size and throughput.
+     */
+    public void recordUpload(Timer.Sample sample, Long bytes) {
+        long nanos = sample.stop(uploadPhaseTimer("transfer"));
+        if (bytes != null) {
+            recordTransfer("upload", bytes, nanos);
+        }
+    }
+
+    /**
+     * Wraps a download stream so that its size and throughput are recorded when it is closed.
+     */
+    public InputStream meterDownload(InputStream in) {
+        return new MeteredInputStream(in, System.nanoTime());
+    }
+
+    <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value).description(description).register(registry);
+    }
+
+    <T> void counter(String name, String description, T target, ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, target, count).description(description).register(registry);
+    }
+
+    private void recordTransfer(String direction, long bytes, long nanos) {
+        DistributionSummary.builder("drive.transfer.bytes")
+                .description("Size of each Drive upload or download")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(registry)
+                .record(bytes);
+        if (nanos > 0) {
+            DistributionSummary.builder("drive.transfer.throughput")
+                    .description("Bytes per second of each Drive upload or download")
+                    .baseUnit("bytes.per.second")
+                    .tag("direction", direction)
+                    .register(registry)
+                    .record(bytes * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+        }
+    }
+
+    private Timer uploadPhaseTimer(String phase) {
+        return Timer.builder("drive.upload.phase")
+                .description("Time spent in each phase of a sales file upload")
+                .tag("phase", phase)
+                .register(registry);
+    }
+
+    private Counter counter(String name, String description, String operation) {
+        return Counter.builder(name).description(description).tag("operation", operation).register(registry);
+    }
+
+    private static int statusOf(IOException failure) {
+        return failure instanceof HttpResponseException ? ((HttpResponseException) failure).getStatusCode() : 0;
+    }
+
+    private static String outcome(IOException failure, int status) {
+        if (failure == null) {
+            return "SUCCESS";
+        }
+        if (DriveRequestExecutor.isThrottled(failure)) {
+            return "THROTTLED";
+        }
+        if (status >= 500) {
+            return "SERVER_ERROR";
+        }
+        if (status >= 400) {
+            return "CLIENT_ERROR";
+        }
+        return "IO_ERROR";
+    }
+
+    private class MeteredInputStream extends FilterInputStream {
+
+        private final long startNanos;
+        private long bytes;
+        private boolean closed;
+
+        MeteredInputStream(InputStream in, long startNanos) {
+            super(in);
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                bytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            bytes += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                recordTransfer("download", bytes, System.nanoTime() - startNanos);
+            }
+            super.close();
+        }
+    }
+}
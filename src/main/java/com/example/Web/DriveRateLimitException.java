@@ -0,0 +1,22 @@
+package com.example.Web;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a Drive call could not be made within the rate limits, either because Drive kept
+ * throttling it through every retry or because no permit became free in time. Callers should
+ * answer with 503 and a Retry-After hint rather than a generic server error.
+ */
+public class DriveRateLimitException extends IOException {
+
+    private final long retryAfterSeconds;
+
+    public DriveRateLimitException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.Web;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The single path every Drive API call goes through. It combines:
+ * <ul>
+ *   <li>a token bucket capping the request rate,</li>
+ *   <li>an AIMD concurrency limit that halves when Drive reports quota or overload errors and
+ *       creeps back up one request per round of successes,</li>
+ *   <li>exponential backoff with full jitter for retryable status codes.</li>
+ * </ul>
+ * Under sustained load this settles just below the Drive quota instead of failing requests.
+ * Callers that cannot wait long enough get a {@link DriveRateLimitException}.
+ * Every attempt is timed in {@link DriveMetrics}.
+ */
+@Component
+public class DriveRequestExecutor {
+
+    /**
+     * A single Drive request, typically {@code () -> drive.files().list()...execute()}.
+     */
+    @FunctionalInterface
+    public interface DriveCall<T> {
+        T execute() throws IOException;
+    }
+
+    private static final Set<String> RATE_LIMIT_REASONS = Set.of("rateLimitExceeded", "userRateLimitExceeded");
+
+    /** The concurrency limit is halved at most once per this interval, so one burst of errors counts once. */
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final DriveMetrics metrics;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long maxWaitNanos;
+
+    // Token bucket
+    private final double permitsPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    // AIMD concurrency limit
+    private final ReentrantLock concurrencyLock = new ReentrantLock();
+    private final Condition concurrencyAvailable = concurrencyLock.newCondition();
+    private final double minConcurrency;
+    private final double maxConcurrency;
+    private double concurrencyLimit;
+    private int inFlight;
+    private long lastDecrease;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong throttledResponses = new AtomicLong();
+
+    public DriveRequestExecutor(
+            DriveMetrics metrics,
+            @Value("${google.drive.rate-limit.requests-per-second:10}") double requestsPerSecond,
+            @Value("${google.drive.rate-limit.burst:20}") int burst,
+            @Value("${google.drive.rate-limit.initial-concurrency:8}") int initialConcurrency,
+            @Value("${google.drive.rate-limit.min-concurrency:1}") int minConcurrency,
+            @Value("${google.drive.rate-limit.max-concurrency:32}") int maxConcurrency,
+            @Value("${google.drive.rate-limit.max-retries:6}") int maxRetries,
+            @Value("${google.drive.rate-limit.initial-backoff:500ms}") Duration initialBackoff,
+            @Value("${google.drive.rate-limit.max-backoff:32s}") Duration maxBackoff,
+            @Value("${google.drive.rate-limit.max-wait:60s}") Duration maxWait) {
+        this.metrics = metrics;
+        this.permitsPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.concurrencyLimit = Math.max(minConcurrency, Math.min(maxConcurrency, initialConcurrency));
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.maxWaitNanos = maxWait.toNanos();
+
+        metrics.gauge("drive.calls.in.flight", "Drive API calls currently executing", this, e -> e.getStats().get("inFlight").doubleValue());
+        metrics.gauge("drive.calls.concurrency.limit", "Current adaptive limit on concurrent Drive API calls", this,
+                e -> e.getStats().get("concurrencyLimit").doubleValue());
+        metrics.gauge("drive.calls.available.permits", "Tokens left in the Drive request rate bucket", this,
+                e -> e.getStats().get("availablePermits").doubleValue());
+    }
+
+    /**
+     * Runs {@code call} under the rate and concurrency limits, retrying retryable failures with backoff.
+     *
+     * @param operation Short name of the call (e.g. "files.list"), used in error messages.
+     * @throws DriveRateLimitException if Drive kept throttling us or no permit became available in time.
+     */
+    public <T> T execute(String operation, DriveCall<T> call) throws IOException {
+        return execute(operation, 1, call);
+    }
+
+    /**
+     * Like {@link #execute(String, DriveCall)}, for a call that Drive counts as {@code permits} requests
+     * against the quota (a batch request counts once per item).
+     */
+    public <T> T execute(String operation, int permits, DriveCall<T> call) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return executeOnce(operation, permits, call);
+            } catch (DriveRateLimitException e) {
+                throw e;
+            } catch (IOException e) {
+                if (!isRetryable(e) || attempt >= maxRetries) {
+                    if (isThrottled(e)) {
+                        throw new DriveRateLimitException(operation + " was still throttled by Drive after "
+                                + attempt + " retries", backoffCapSeconds(), e);
+                    }
+                    throw e;
+                }
+                retries.incrementAndGet();
+                metrics.recordRetry(operation);
+                sleep(backoffMillis(attempt));
+            }
+        }
+    }
+
+    /**
+     * Runs {@code call} once under the rate and concurrency limits, feeding the outcome into the
+     * adaptive limit but leaving retries to the caller (used by the resumable uploader, which
+     * must re-query the session between attempts).
+     */
+    public <T> T executeOnce(String operation, DriveCall<T> call) throws IOException {
+        return executeOnce(operation, 1, call);
+    }
+
+    /**
+     * Like {@link #executeOnce(String, DriveCall)}, for a call that counts as {@code permits} requests.
+     */
+    public <T> T executeOnce(String operation, int permits, DriveCall<T> call) throws IOException {
+        acquireToken(operation, permits);
+        acquireConcurrency(operation);
+        requests.incrementAndGet();
+        boolean throttled = false;
+        Timer.Sample sample = metrics.startTimer();
+        try {
+            T result = call.execute();
+            metrics.recordCall(operation, sample, null);
+            return result;
+        } catch (IOException e) {
+            metrics.recordCall(operation, sample, e);
+            throttled = isThrottled(e);
+            if (throttled) {
+                throttledResponses.incrementAndGet();
+            }
+            throw e;
+        } finally {
+            releaseConcurrency(throttled);
+        }
+    }
+
+    /**
+     * Whether a failed call may succeed if repeated: throttling and transient server errors.
+     */
+    public static boolean isRetryable(IOException e) {
+        if (!(e instanceof GoogleJsonResponseException)) {
+            return false;
+        }
+        GoogleJsonResponseException response = (GoogleJsonResponseException) e;
+        return isRetryable(response.getStatusCode(), response.getDetails());
+    }
+
+    /**
+     * {@link #isRetryable(IOException)} for an error reported without an exception, e.g. one item of a batch.
+     */
+    public static boolean isRetryable(int status, GoogleJsonError details) {
+        return isThrottled(status, details) || status == 500 || status == 502 || status == 504;
+    }
+
+    /**
+     * Whether Drive is telling us to slow down: 429, 503, or 403 with a rate limit reason.
+     */
+    public static boolean isThrottled(IOException e) {
+        if (!(e instanceof GoogleJsonResponseException)) {
+            return false;
+        }
+        GoogleJsonResponseException response = (GoogleJsonResponseException) e;
+        return isThrottled(response.getStatusCode(), response.getDetails());
+    }
+
+    public static boolean isThrottled(int status, GoogleJsonError details) {
+        if (status == 429 || status == 503) {
+            return true;
+        }
+        if (status != 403 || details == null || details.getErrors() == null) {
+            return false;
+        }
+        for (GoogleJsonError.ErrorInfo error : details.getErrors()) {
+            if (RATE_LIMIT_REASONS.contains(error.getReason())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Number> getStats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            refill(System.nanoTime());
+            stats.put("availablePermits", Math.max(0, tokens));
+        }
+        concurrencyLock.lock();
+        try {
+            stats.put("concurrencyLimit", concurrencyLimit);
+            stats.put("inFlight", inFlight);
+        } finally {
+            concurrencyLock.unlock();
+        }
+        stats.put("requests", requests.get());
+        stats.put("retries", retries.get());
+        stats.put("rejections", rejections.get());
+        stats.put("throttledResponses", throttledResponses.get());
+        return stats;
+    }
+
+    private void acquireToken(String operation, int permits) throws IOException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            // Reserve the tokens now, possibly going into debt; the debt is the time to wait.
+            waitNanos = tokens >= permits ? 0 : (long) ((permits - tokens) / permitsPerNano);
+            if (waitNanos > maxWaitNanos) {
+                rejections.incrementAndGet();
+                metrics.recordRejection(operation);
+                throw new DriveRateLimitException(operation + " rejected: request rate limit queue is full",
+                        TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1, null);
+            }
+            tokens -= permits;
+        }
+        if (waitNanos > 0) {
+            sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+
+    private void acquireConcurrency(String operation) throws IOException {
+        long remaining = maxWaitNanos;
+        concurrencyLock.lock();
+        try {
+            while (inFlight >= (int) concurrencyLimit) {
+                if (remaining <= 0) {
+                    rejections.incrementAndGet();
+                    metrics.recordRejection(operation);
+                    throw new DriveRateLimitException(operation + " rejected: too many concurrent Drive requests",
+                            backoffCapSeconds(), null);
+                }
+                remaining = concurrencyAvailable.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a Drive request slot");
+        } finally {
+            concurrencyLock.unlock();
+        }
+    }
+
+    private void releaseConcurrency(boolean throttled) {
+        concurrencyLock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if (throttled) {
+                if (now - lastDecrease >= DECREASE_INTERVAL_NANOS) {
+                    concurrencyLimit = Math.max(minConcurrency, concurrencyLimit / 2);
+                    lastDecrease = now;
+                }
+            } else {
+                // Additive increase: roughly +1 after a full window of successful requests.
+                concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+            }
+            concurrencyAvailable.signalAll();
+        } finally {
+            concurrencyLock.unlock();
+        }
+    }
+
+    /**
+     * Sleeps for the jittered backoff of the given retry attempt (0 for the first retry), for callers
+     * that retry parts of a call themselves, such as the failed items of a batch.
+     */
+    public void backoff(int attempt) throws InterruptedIOException {
+        retries.incrementAndGet();
+        sleep(backoffMillis(attempt));
+    }
+
+    /**
+     * Full jitter: a random delay between zero and the exponential backoff for this attempt.
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private long backoffCapSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxBackoffMillis));
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to call Drive");
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.Web;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.drive.model.File;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads media to Drive with the resumable upload protocol, reading the source stream one chunk
+ * at a time. Only a single chunk is ever held in memory, failed chunks are retried on their own,
+ * and a session that runs out of retries is kept so the client can resume it from the last byte
+ * Drive has committed.
+ *
+ * See https://developers.google.com/drive/api/guides/manage-uploads#resumable
+ */
+public class DriveResumableUploader {
+
+    /** Drive requires every chunk except the last to be a multiple of 256 KiB. */
+    static final int CHUNK_GRANULARITY = 256 * 1024;
+
+    /** Drive keeps resumable sessions for about a week. */
+    private static final long SESSION_LIFETIME_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final int STATUS_RESUME_INCOMPLETE = 308;
+
+    private final HttpRequestFactory requestFactory;
+    private final JsonFactory jsonFactory;
+    private final String uploadUrl;
+    private final DriveRequestExecutor driveCalls;
+    private final int chunkSize;
+    private final int maxChunkRetries;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public DriveResumableUploader(HttpRequestFactory requestFactory, JsonFactory jsonFactory, String rootUrl,
+                                  DriveRequestExecutor driveCalls, int chunkSize, int maxChunkRetries) {
+        this.requestFactory = requestFactory;
+        this.jsonFactory = jsonFactory;
+        this.uploadUrl = rootUrl + "upload/drive/v3/files";
+        this.driveCalls = driveCalls;
+        this.chunkSize = Math.max(CHUNK_GRANULARITY, chunkSize / CHUNK_GRANULARITY * CHUNK_GRANULARITY);
+        this.maxChunkRetries = maxChunkRetries;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Starts a resumable session for {@code metadata} and uploads {@code content} chunk by chunk.
+     *
+     * @param contentLength the total length if known, or -1 to stream content of unknown length.
+     * @return the created Drive file.
+     * @throws ResumableUploadException if a chunk still fails after all retries; the session can then be resumed.
+     */
+    public File upload(File metadata, String contentType, long contentLength, InputStream content) throws IOException {
+        return upload(startSession(null, metadata, metadata.getName(), contentType, contentLength), content);
+    }
+
+    /**
+     * Replaces the content of an existing file in place (keeping its ID) through a resumable session.
+     *
+     * @param fileName The file's name, shown in the session status.
+     * @return the updated Drive file.
+     */
+    public File replace(String fileId, String fileName, String contentType, long contentLength, InputStream content)
+            throws IOException {
+        return upload(startSession(fileId, new File(), fileName, contentType, contentLength), content);
+    }
+
+    private File upload(UploadSession session, InputStream content) throws IOException {
+        session.active.set(true);
+        try {
+            return transfer(session, content, 0);
+        } finally {
+            session.active.set(false);
+        }
+    }
+
+    /**
+     * Continues an interrupted session. {@code content} must start at byte {@code offset} of the
+     * original upload; bytes Drive has already committed past that offset are skipped.
+     */
+    public File resume(String sessionId, long offset, InputStream content) throws IOException {
+        UploadSession session = getSession(sessionId);
+        if (!session.active.compareAndSet(false, true)) {
+            throw new IOException("Upload session " + sessionId + " is already in progress.");
+        }
+        try {
+            if (session.file != null) {
+                return session.file;
+            }
+            long committed = queryCommitted(session);
+            if (session.file != null) {
+                return session.file;
+            }
+            if (offset > committed) {
+                throw new IOException("Cannot resume at byte " + offset + "; Drive has only committed " + committed + " bytes.");
+            }
+            content.skipNBytes(committed - offset);
+            return transfer(session, content, committed);
+        } finally {
+            session.active.set(false);
+        }
+    }
+
+    /**
+     * Whether the session is still known, i.e. has not completed its lifetime or been discarded by Drive.
+     */
+    public boolean hasSession(String sessionId) {
+        purgeExpiredSessions();
+        return sessions.containsKey(sessionId);
+    }
+
+    public UploadSessionStatus getStatus(String sessionId) throws IOException {
+        UploadSession session = getSession(sessionId);
+        if (session.file == null && !session.active.get()) {
+            queryCommitted(session);
+        }
+        return new UploadSessionStatus(session.id, session.fileName, session.committed, session.totalLength,
+                session.file != null, session.file != null ? session.file.getId() : null);
+    }
+
+    /**
+     * Opens a session creating a new file, or updating the content of {@code fileId} if it is not null.
+     */
+    private UploadSession startSession(String fileId, File metadata, String fileName, String contentType, long contentLength)
+            throws IOException {
+        GenericUrl url = new GenericUrl(fileId == null ? uploadUrl : uploadUrl + "/" + fileId);
+        url.put("uploadType", "resumable");
+        url.put("supportsAllDrives", true);
+        url.put("fields", "id, name, mimeType, size, md5Checksum, modifiedTime");
+
+        String location = driveCalls.execute("upload.session.start", () -> {
+            HttpRequest request = requestFactory.buildPostRequest(url, new JsonHttpContent(jsonFactory, metadata));
+            if (fileId != null) {
+                // Updates are PATCH; the override header also works on transports without PATCH support.
+                request.getHeaders().set("X-HTTP-Method-Override", "PATCH");
+            }
+            request.getHeaders().set("X-Upload-Content-Type", contentType);
+            if (contentLength >= 0) {
+                request.getHeaders().set("X-Upload-Content-Length", contentLength);
+            }
+            request.setThrowExceptionOnExecuteError(false);
+
+            HttpResponse response = request.execute();
+            try {
+                if (!response.isSuccessStatusCode()) {
+                    throw GoogleJsonResponseException.from(jsonFactory, response);
+                }
+                return response.getHeaders().getLocation();
+            } finally {
+                response.disconnect();
+            }
+        });
+        if (location == null) {
+            throw new IOException("Drive did not return a resumable session URI.");
+        }
+        purgeExpiredSessions();
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), location, fileName, contentLength);
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /**
+     * Sends {@code content} (which starts at byte {@code offset}) in chunks until Drive reports the file complete.
+     */
+    private File transfer(UploadSession session, InputStream content, long offset) throws IOException {
+        byte[] buffer = new byte[chunkSize];
+        int buffered = 0;
+        boolean endOfStream = false;
+        session.committed = offset;
+
+        while (true) {
+            if (!endOfStream) {
+                int read = content.readNBytes(buffer, buffered, chunkSize - buffered);
+                buffered += read;
+                endOfStream = buffered < chunkSize;
+            }
+            long chunkStart = session.committed;
+            long total = endOfStream ? chunkStart + buffered : session.totalLength;
+
+            sendChunkWithRetries(session, buffer, chunkStart, buffered, total);
+            if (session.file != null) {
+                return session.file;
+            }
+
+            // Drive may persist less than a full chunk; keep the remainder for the next request.
+            int accepted = (int) Math.min(buffered, Math.max(0, session.committed - chunkStart));
+            System.arraycopy(buffer, accepted, buffer, 0, buffered - accepted);
+            buffered -= accepted;
+
+            if (endOfStream && buffered == 0) {
+                throw new IOException("Drive did not finalize upload session " + session.id + " after all bytes were sent.");
+            }
+        }
+    }
+
+    private void sendChunkWithRetries(UploadSession session, byte[] buffer, long chunkStart, int length, long total)
+            throws IOException {
+        int attempt = 0;
+        while (true) {
+            try {
+                sendChunk(session, buffer, chunkStart, length, total);
+                return;
+            } catch (IOException e) {
+                if (!isRetryable(e) || attempt >= maxChunkRetries) {
+                    throw new ResumableUploadException(session.id, session.committed, e);
+                }
+                sleepBeforeRetry(attempt++);
+                try {
+                    queryCommitted(session);
+                } catch (IOException statusError) {
+                    // The next chunk attempt will report the problem if it persists.
+                }
+                if (session.file != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the part of {@code buffer} (holding bytes from {@code chunkStart}) that Drive has not committed yet.
+     */
+    private void sendChunk(UploadSession session, byte[] buffer, long chunkStart, int length, long total)
+            throws IOException {
+        long start = session.committed;
+        int skip = (int) Math.min(length, Math.max(0, start - chunkStart));
+        int remaining = length - skip;
+        String totalText = total >= 0 ? String.valueOf(total) : "*";
+        HttpContent body;
+        String contentRange;
+        if (remaining == 0) {
+            if (total < 0) {
+                return; // Nothing left of a middle chunk; the caller refills the buffer.
+            }
+            body = new EmptyContent();
+            contentRange = "bytes */" + totalText;
+        } else {
+            body = new ByteArrayContent(null, buffer, skip, remaining);
+            contentRange = "bytes " + start + "-" + (start + remaining - 1) + "/" + totalText;
+        }
+        driveCalls.executeOnce("upload.chunk", () -> {
+            HttpResponse response = executeSessionRequest(session, body, contentRange);
+            try {
+                handleSessionResponse(session, response);
+                return null;
+            } finally {
+                response.disconnect();
+            }
+        });
+    }
+
+    /**
+     * Asks Drive how many bytes of the session it has committed, updating the session in place.
+     */
+    private long queryCommitted(UploadSession session) throws IOException {
+        String total = session.totalLength >= 0 ? String.valueOf(session.totalLength) : "*";
+        return driveCalls.execute("upload.status", () -> {
+            HttpResponse response = executeSessionRequest(session, new EmptyContent(), "bytes */" + total);
+            try {
+                handleSessionResponse(session, response);
+                return session.committed;
+            } finally {
+                response.disconnect();
+            }
+        });
+    }
+
+    private HttpResponse executeSessionRequest(UploadSession session, HttpContent body, String contentRange) throws IOException {
+        HttpRequest request = requestFactory.buildPutRequest(new GenericUrl(session.sessionUri), body);
+        request.getHeaders().setContentRange(contentRange);
+        request.setThrowExceptionOnExecuteError(false);
+        request.setFollowRedirects(false);
+        request.setParser(jsonFactory.createJsonObjectParser());
+        return request.execute();
+    }
+
+    private void handleSessionResponse(UploadSession session, HttpResponse response) throws IOException {
+        int status = response.getStatusCode();
+        if (status == STATUS_RESUME_INCOMPLETE) {
+            // "Range: bytes=0-N" lists what Drive has persisted; no header means nothing yet.
+            String range = response.getHeaders().getRange();
+            session.committed = range != null ? Long.parseLong(range.substring(range.indexOf('-') + 1)) + 1 : 0;
+        } else if (response.isSuccessStatusCode()) {
+            session.file = response.parseAs(File.class);
+            session.committed = session.file.getSize() != null ? session.file.getSize() : session.committed;
+        } else {
+            if (status == 404 || status == 410) {
+                sessions.remove(session.id);
+            }
+            throw GoogleJsonResponseException.from(jsonFactory, response);
+        }
+    }
+
+    private UploadSession getSession(String sessionId) throws FileNotFoundException {
+        purgeExpiredSessions();
+        UploadSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new FileNotFoundException("Unknown or expired upload session: " + sessionId);
+        }
+        return session;
+    }
+
+    private void purgeExpiredSessions() {
+        long cutoff = System.currentTimeMillis() - SESSION_LIFETIME_MILLIS;
+        sessions.values().removeIf(session -> session.createdAt < cutoff);
+    }
+
+    private static boolean isRetryable(IOException e) {
+        if (e instanceof DriveRateLimitException) {
+            return false;
+        }
+        // Chunks can also be retried after connection resets and timeouts, since the session is
+        // re-queried before each retry; only Drive's own error responses need classifying.
+        return !(e instanceof GoogleJsonResponseException) || DriveRequestExecutor.isRetryable(e);
+    }
+
+    private static void sleepBeforeRetry(int attempt) throws InterruptedIOException {
+        long delay = Math.min(32_000L, 1000L << attempt);
+        delay += ThreadLocalRandom.current().nextLong(1000);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry upload chunk");
+        }
+    }
+
+    private static final class UploadSession {
+        private final String id;
+        private final String sessionUri;
+        private final String fileName;
+        private final long totalLength;
+        private final long createdAt = System.currentTimeMillis();
+        private final AtomicBoolean active = new AtomicBoolean();
+        private volatile long committed;
+        private volatile File file;
+
+        private UploadSession(String id, String sessionUri, String fileName, long totalLength) {
+            this.id = id;
+            this.sessionUri = sessionUri;
+            this.fileName = fileName;
+            this.totalLength = totalLength;
+        }
+    }
+}
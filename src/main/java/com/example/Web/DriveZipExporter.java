@@ -0,0 +1,132 @@
+package com.example.Web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a list of Drive files as a ZIP stream. Files are fetched to local disk by a bounded window of
+ * parallel prefetches while earlier entries are being compressed and sent, so the archive starts
+ * flowing after the first file arrives and heap use does not depend on how many files (or how large)
+ * the export contains. Disk use is bounded by the window. Files stored gzip-compressed are
+ * decompressed into their entries.
+ */
+public class DriveZipExporter {
+
+    /**
+     * Fetches a file's full content to local disk and opens it. The channel is closed after its entry is written.
+     */
+    @FunctionalInterface
+    public interface ContentOpener {
+        FileChannel open(DriveFileMetadata file) throws IOException;
+    }
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final ContentOpener opener;
+    private final ExecutorService executor;
+    private final int window;
+
+    public DriveZipExporter(ContentOpener opener, ExecutorService executor, int window) {
+        this.opener = opener;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * Writes all entries, in order, as a ZIP to {@code out}. Does not close {@code out}.
+     * If writing fails (e.g. the client went away), queued prefetches are cancelled and fetched files released.
+     */
+    public void write(List<FolderExportEntry> entries, OutputStream out) throws IOException {
+        Iterator<FolderExportEntry> pending = entries.iterator();
+        Deque<Prefetch> prefetched = new ArrayDeque<>();
+        try {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            for (FolderExportEntry entry : entries) {
+                while (prefetched.size() < window && pending.hasNext()) {
+                    DriveFileMetadata file = pending.next().getFile();
+                    prefetched.add(new Prefetch(file));
+                }
+                try (FileChannel channel = await(prefetched.removeFirst().future, entry.getPath());
+                     InputStream in = DriveCompression.decode(entry.getFile(), Channels.newInputStream(channel))) {
+                    ZipEntry zipEntry = new ZipEntry(entry.getPath());
+                    if (entry.getFile().getModifiedTime() != null) {
+                        zipEntry.setTime(entry.getFile().getModifiedTime());
+                    }
+                    zip.putNextEntry(zipEntry);
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        zip.write(buffer, 0, read);
+                    }
+                    zip.closeEntry();
+                }
+            }
+            zip.finish();
+            out.flush();
+        } finally {
+            for (Prefetch prefetch : prefetched) {
+                prefetch.release();
+            }
+        }
+    }
+
+    private static FileChannel await(Future<FileChannel> future, String path) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + path);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to fetch " + path, e.getCause());
+        }
+    }
+
+    /**
+     * One file being fetched ahead of its entry. {@code Future.cancel} cannot tell whether a fetch had
+     * already started, so the fetch and {@link #release} race to claim it instead: a fetch that loses
+     * never opens its file, and one that wins is waited for and closed.
+     */
+    private class Prefetch {
+        final AtomicBoolean started = new AtomicBoolean();
+        final Future<FileChannel> future;
+
+        Prefetch(DriveFileMetadata file) {
+            this.future = executor.submit(() -> started.compareAndSet(false, true) ? opener.open(file) : null);
+        }
+
+        /**
+         * Releases a prefetch that will not be written, closing its file (and deleting a spooled copy)
+         * rather than leaking it.
+         */
+        void release() {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                return;
+            }
+            try {
+                future.get().close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | IOException ignored) {
+                // Nothing to release.
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A file to be written into a folder export ZIP, with its path inside the archive.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderExportEntry {
+    private String path; // Path inside the ZIP (e.g., "March/Amazon/US/Bryco-2024-03-01_2024-03-31.csv")
+    private DriveFileMetadata file; // The Drive file to fetch
+}
@@ -1,129 +1,160 @@
 package com.example.Web;
 
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.HttpRequest;
-import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.InputStreamContent;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
 import com.google.api.services.drive.model.File; // This is Google Drive's File
 import com.google.api.services.drive.model.FileList;
-import com.google.auth.http.HttpCredentialsAdapter;
-import com.google.auth.oauth2.GoogleCredentials;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
-// import org.springframework.core.io.ClassPathResource; // No longer strictly needed if only using FileInputStream for file system path
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Month;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
-// NEW IMPORTS FOR FILE SYSTEM READING
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-// import java.io.File; // REMOVE THIS import, we will use the fully qualified name
-
 @Service
 public class GoogleDriveService {
 
-    @Value("${GOOGLE_APPLICATION_CREDENTIALS_JSON_STRING:}")
-    private String serviceAccountKeyJsonString;
-
-    @Value("${google.drive.service-account-key-path:/etc/secrets/google-credentials.json}")
-    private String serviceAccountKeyPath;
-
     @Value("${google.drive.root-folder-id}")
     private String rootFolderId;
 
-    @Value("${google.drive.application-name}")
-    private String applicationName;
+    @Value("${google.drive.upload.mode:resumable}")
+    private String uploadMode;
 
-    private Drive driveService;
-    private final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+    @Value("${google.drive.upload.chunk-size:8MB}")
+    private DataSize uploadChunkSize;
 
-    @PostConstruct
-    public void init() throws IOException, GeneralSecurityException {
-        InputStream serviceAccountStream = null;
-        try {
-            if (serviceAccountKeyJsonString != null && !serviceAccountKeyJsonString.isEmpty()) {
-                System.out.println("Attempting to load Google credentials from environment variable GOOGLE_APPLICATION_CREDENTIALS_JSON_STRING.");
-                serviceAccountStream = new ByteArrayInputStream(serviceAccountKeyJsonString.getBytes(StandardCharsets.UTF_8));
-            } else if (serviceAccountKeyPath != null && !serviceAccountKeyPath.isEmpty()) {
-                // Use fully qualified name for java.io.File
-                java.io.File credentialsFile = new java.io.File(serviceAccountKeyPath); 
-
-                if (credentialsFile.exists() && credentialsFile.isFile()) {
-                    System.out.println("Attempting to load Google credentials from file system path: " + serviceAccountKeyPath);
-                    serviceAccountStream = new FileInputStream(credentialsFile);
-                } else {
-                    System.err.println("Google credentials file NOT found at file system path: " + serviceAccountKeyPath);
-                    System.err.println("Attempting to load as a Class Path Resource (fallback for local dev if file is bundled in JAR)...");
-                    serviceAccountStream = getClass().getClassLoader().getResourceAsStream(serviceAccountKeyPath);
-                    if (serviceAccountStream == null) {
-                        throw new FileNotFoundException("Google credentials.json not found on file system or as a classpath resource at: " + serviceAccountKeyPath);
-                    }
-                }
-            } else {
-                throw new IOException("Google service account credentials not found. Neither environment variable GOOGLE_APPLICATION_CREDENTIALS_JSON_STRING nor file path google.drive.service-account-key-path is configured.");
-            }
+    @Value("${google.drive.upload.max-chunk-retries:5}")
+    private int maxChunkRetries;
 
-            if (serviceAccountStream == null) {
-                 throw new IOException("Failed to obtain InputStream for Google credentials.json after all attempts.");
-            }
+    @Value("${google.drive.upload.dedup:skip}")
+    private String dedupPolicy;
 
-            GoogleCredentials credentials = GoogleCredentials.fromStream(serviceAccountStream)
-                    .createScoped(Collections.singleton(DriveScopes.DRIVE));
+    @Value("${google.drive.batch.parallelism:4}")
+    private int batchParallelism;
 
-            HttpRequestInitializer requestInitializer = new HttpRequestInitializer() {
-                final HttpRequestInitializer originalInitializer = new HttpCredentialsAdapter(credentials);
+    @Value("${google.drive.bulk.max-item-retries:3}")
+    private int bulkMaxItemRetries;
 
-                @Override
-                public void initialize(HttpRequest httpRequest) throws IOException {
-                    originalInitializer.initialize(httpRequest);
-                    httpRequest.setConnectTimeout(60000);
-                    httpRequest.setReadTimeout(60000);
-                }
-            };
+    @Value("${google.drive.export.parallelism:8}")
+    private int exportParallelism;
 
-            driveService = new Drive.Builder(
-                    GoogleNetHttpTransport.newTrustedTransport(),
-                    JSON_FACTORY,
-                    requestInitializer)
-                    .setApplicationName(applicationName)
-                    .build();
+    @Value("${google.drive.export.prefetch-window:4}")
+    private int exportPrefetchWindow;
 
-            System.out.println("GoogleDriveService initialized successfully.");
+    private final Drive driveService;
+    private DriveResumableUploader resumableUploader;
+    private ExecutorService batchExecutor;
+    private ExecutorService exportExecutor;
+    private DriveZipExporter zipExporter;
+    private static final String CSV_MIME_TYPE = "text/csv";
 
-        } catch (FileNotFoundException e) {
-            System.err.println("ERROR: Google credentials file not found: " + e.getMessage());
-            throw e;
-        } catch (IOException | GeneralSecurityException e) {
-            System.err.println("ERROR: Failed to initialize GoogleDriveService: " + e.getMessage());
-            throw e;
-        } finally {
-            if (serviceAccountStream != null) {
-                try {
-                    serviceAccountStream.close();
-                } catch (IOException e) {
-                    System.err.println("Error closing service account stream: " + e.getMessage());
-                }
-            }
-        }
+    /** Largest page size the Drive files.list API accepts. */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /** Most calls Drive accepts in one batch request. */
+    static final int MAX_BATCH_SIZE = 100;
+
+    private final DriveRequestExecutor driveCalls;
+    private final DriveFolderCache folderCache;
+    private final DriveMetadataMirror metadataMirror;
+    private final DriveMetrics metrics;
+    private final DriveContentCache contentCache;
+    private final DriveHashIndex hashIndex;
+    private final SalesCsvValidator csvValidator;
+    private final DriveCompression compression;
+
+    // Resumable sessions of interrupted uploads, and where each upload was going.
+    private final Map<String, InterruptedUpload> interruptedUploads = new ConcurrentHashMap<>();
+
+    public GoogleDriveService(Drive driveService, DriveRequestExecutor driveCalls, DriveFolderCache folderCache,
+                              DriveMetadataMirror metadataMirror, DriveMetrics metrics, DriveContentCache contentCache,
+                              DriveHashIndex hashIndex, SalesCsvValidator csvValidator, DriveCompression compression) {
+        this.driveService = driveService;
+        this.driveCalls = driveCalls;
+        this.folderCache = folderCache;
+        this.metadataMirror = metadataMirror;
+        this.metrics = metrics;
+        this.contentCache = contentCache;
+        this.hashIndex = hashIndex;
+        this.csvValidator = csvValidator;
+        this.compression = compression;
     }
 
-    public String uploadSalesDataFile(
+    @PostConstruct
+    public void init() {
+        resumableUploader = new DriveResumableUploader(driveService.getRequestFactory(), driveService.getJsonFactory(),
+                driveService.getRootUrl(), driveCalls, (int) uploadChunkSize.toBytes(), maxChunkRetries);
+
+        AtomicInteger batchThreadCount = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(batchParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "drive-batch-upload-" + batchThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger exportThreadCount = new AtomicInteger();
+        exportExecutor = Executors.newFixedThreadPool(exportParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "drive-export-prefetch-" + exportThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        zipExporter = new DriveZipExporter(this::openExportContent, exportExecutor, exportPrefetchWindow);
+    }
+
+    /**
+     * Uploads a sales CSV into its month/market/country folder. Depending on
+     * {@code google.drive.upload.dedup}, an identical file already in the folder is returned instead
+     * of uploading again ("skip"), and an existing file with the same name but different content is
+     * additionally overwritten in place ("replace"); "off" always creates a new file.
+     * <p>
+     * The CSV is validated as it streams to Drive, and its statistics are stored as the file's appProperties.
+     *
+     * @throws SalesCsvValidationException if the content is malformed; the upload is aborted.
+     */
+    public UploadResult uploadSalesDataFile(
             MultipartFile file,
             String monthNumber,
             String market,
@@ -132,45 +163,487 @@ public class GoogleDriveService {
             String fromDate,
             String toDate) throws IOException {
 
+        checkCsv(file);
+
+        SalesCsvValidator.Stage csv = csvValidator.stage(fromDate, toDate);
+        String newFileName = storedFileName(brand, fromDate, toDate);
+        String countryFolderId = timedResolveCountryFolder(monthNumber, market, country);
+        return uploadToCountryFolder(monthNumber, market, country, countryFolderId,
+                folderId -> createFile(file, newFileName, folderId, csv));
+    }
+
+    /**
+     * Rejects the upload parameters {@link #uploadSalesDataFile} would reject, without calling Drive:
+     * fromDate/toDate must be a valid date range and monthNumber a month from 1 to 12.
+     *
+     * @throws SalesCsvValidationException if fromDate/toDate are not a valid date range.
+     */
+    void checkUploadParameters(String monthNumber, String fromDate, String toDate) throws IOException {
+        csvValidator.stage(fromDate, toDate);
+        monthName(monthNumber);
+    }
+
+    /**
+     * Uploads several files at once. Each distinct month/market/country folder is resolved once for
+     * the whole batch, then the files are uploaded in parallel on a bounded pool
+     * ({@code google.drive.batch.parallelism} threads shared by all batches).
+     *
+     * @return One result per request, in request order. A failed file does not fail the others.
+     */
+    public List<BatchUploadResult> uploadSalesDataFiles(List<SalesUploadRequest> uploads) {
+        Map<String, String> folderIds = new HashMap<>();
+        Map<String, String> folderErrors = new HashMap<>();
+        for (SalesUploadRequest upload : uploads) {
+            String key = folderKey(upload);
+            if (folderIds.containsKey(key) || folderErrors.containsKey(key)) {
+                continue;
+            }
+            try {
+                folderIds.put(key, timedResolveCountryFolder(upload.getMonth(), upload.getMarket(), upload.getCountry()));
+            } catch (IOException | RuntimeException e) {
+                folderErrors.put(key, e.getMessage());
+            }
+        }
+
+        List<Future<UploadResult>> futures = new ArrayList<>();
+        for (SalesUploadRequest upload : uploads) {
+            String countryFolderId = folderIds.get(folderKey(upload));
+            if (countryFolderId == null) {
+                futures.add(null);
+                continue;
+            }
+            futures.add(batchExecutor.submit(() -> {
+                checkCsv(upload.getFile());
+                SalesCsvValidator.Stage csv = csvValidator.stage(upload.getFromDate(), upload.getToDate());
+                String newFileName = storedFileName(upload.getBrand(), upload.getFromDate(), upload.getToDate());
+                return uploadToCountryFolder(upload.getMonth(), upload.getMarket(), upload.getCountry(), countryFolderId,
+                        folderId -> createFile(upload.getFile(), newFileName, folderId, csv));
+            }));
+        }
+
+        List<BatchUploadResult> results = new ArrayList<>();
+        for (int i = 0; i < uploads.size(); i++) {
+            SalesUploadRequest upload = uploads.get(i);
+            String originalFileName = upload.getFile().getOriginalFilename();
+            Future<UploadResult> future = futures.get(i);
+            if (future == null) {
+                results.add(new BatchUploadResult(i, originalFileName, null, false,
+                        "Failed to resolve target folder: " + folderErrors.get(folderKey(upload)), false));
+                continue;
+            }
+            try {
+                UploadResult uploaded = future.get();
+                results.add(new BatchUploadResult(i, originalFileName, uploaded.getFileId(), true, null, uploaded.isDeduplicated()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.stream().filter(Objects::nonNull).forEach(pending -> pending.cancel(true));
+                results.add(new BatchUploadResult(i, originalFileName, null, false, "Interrupted", false));
+            } catch (ExecutionException e) {
+                results.add(new BatchUploadResult(i, originalFileName, null, false, e.getCause().getMessage(), false));
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
+        if (exportExecutor != null) {
+            exportExecutor.shutdownNow();
+        }
+    }
+
+    private String storedFileName(String brand, String fromDate, String toDate) {
+        return compression.storedName(SalesFileName.format(brand, fromDate, toDate));
+    }
+
+    static void checkCsv(MultipartFile file) throws IOException {
         if (!"text/csv".equals(file.getContentType()) && !file.getOriginalFilename().toLowerCase().endsWith(".csv")) {
             throw new IOException("Only CSV files are allowed.");
         }
+    }
 
-        String monthName = Month.of(Integer.parseInt(monthNumber)).getDisplayName(java.time.format.TextStyle.FULL, Locale.ENGLISH);
+    private static String folderKey(SalesUploadRequest upload) {
+        return upload.getMonth() + "/" + upload.getMarket() + "/" + upload.getCountry();
+    }
 
-        String monthFolderId = findOrCreateFolder(rootFolderId, monthName);
+    /**
+     * Uploads a CSV read directly from {@code content} (e.g. a raw request body) using a resumable
+     * session, so neither the heap nor a temp file ever holds more than one chunk of it.
+     * <p>
+     * The MD5 is computed while the bytes stream through, so deduplication can only happen afterwards:
+     * with the "skip" policy a new file identical to an existing one is deleted again and the existing
+     * one returned. With "replace", a file of the same name is overwritten in place from the start.
+     * The CSV is validated on the way through as in {@link #uploadSalesDataFile}.
+     *
+     * @param contentLength The total length if known, or -1.
+     * @return The Google Drive file ID and whether the upload was deduplicated.
+     * @throws ResumableUploadException if the transfer was interrupted; it can be continued with {@link #resumeUpload}.
+     */
+    public UploadResult uploadSalesDataStream(
+            InputStream content,
+            long contentLength,
+            String monthNumber,
+            String market,
+            String country,
+            String brand,
+            String fromDate,
+            String toDate) throws IOException {
 
-        String marketFolderId = findOrCreateFolder(monthFolderId, market);
+        SalesCsvValidator.Stage csv = csvValidator.stage(fromDate, toDate);
+        String newFileName = storedFileName(brand, fromDate, toDate);
+        String countryFolderId = timedResolveCountryFolder(monthNumber, market, country);
+        return uploadToCountryFolder(monthNumber, market, country, countryFolderId, folderId -> {
+            DriveFileMetadata sameName = "replace".equalsIgnoreCase(dedupPolicy)
+                    ? hashIndex.findByName(folderId, newFileName, this::listFilesInFolder) : null;
+            // The MD5 is taken over the stored bytes, so it matches what Drive reports for compressed files too.
+            MessageDigest md5 = newMd5();
+            InputStream hashed = new DigestInputStream(compression.compress(csv.wrap(content)), md5);
+            String mimeType = compression.storedMimeType(CSV_MIME_TYPE);
+            long storedLength = compression.isEnabled() ? -1 : contentLength;
 
-        String countryFolderId = findOrCreateFolder(marketFolderId, country);
+            Timer.Sample transfer = metrics.startTimer();
+            File uploadedFile;
+            try {
+                uploadedFile = sameName != null
+                        ? resumableUploader.replace(sameName.getId(), newFileName, mimeType, storedLength, hashed)
+                        : resumableUploader.upload(newFileMetadata(newFileName, mimeType, folderId), mimeType, storedLength, hashed);
+            } catch (ResumableUploadException e) {
+                throw interrupted(e, folderId, newFileName, csv, sameName != null);
+            }
+            metrics.recordUpload(transfer, uploadedFile.getSize());
+            String checksum = HexFormat.of().formatHex(md5.digest());
 
-        String newFileName = String.format("%s-%s_%s.csv", brand, fromDate, toDate);
+            if (sameName != null) {
+                storeStats(uploadedFile, csv);
+                recordUploaded(uploadedFile, folderId, checksum);
+                return new UploadResult(uploadedFile.getId(), false, true);
+            }
+            // The folder may be indexed only now, with the new file already in it, so that file is left out.
+            DriveFileMetadata duplicate = "skip".equalsIgnoreCase(dedupPolicy)
+                    ? findDuplicate(folderId, checksum, newFileName, uploadedFile.getId()) : null;
+            if (duplicate != null) {
+                driveCalls.execute("files.delete", () -> driveService.files().delete(uploadedFile.getId()).execute());
+                hashIndex.forget(uploadedFile.getId());
+                return new UploadResult(duplicate.getId(), true, false);
+            }
+            storeStats(uploadedFile, csv);
+            recordUploaded(uploadedFile, folderId, checksum);
+            return new UploadResult(uploadedFile.getId(), false, false);
+        });
+    }
+
+    /**
+     * Continues an interrupted resumable upload. {@code content} must start at byte {@code offset} of the file.
+     * <p>
+     * Once the file is complete it goes through what a fresh upload does afterwards: validation and
+     * statistics, deduplication, and recording in the metadata mirror and hash index. Only part of
+     * the CSV passed the validator in each request, so the stored file is read back from Drive and
+     * validated as a whole. A new file that turns out to be invalid is deleted; a replaced file
+     * cannot be restored, so the error is only reported.
+     *
+     * @return The Google Drive file ID and whether the upload was deduplicated.
+     */
+    public UploadResult resumeUpload(String sessionId, long offset, InputStream content) throws IOException {
+        File uploadedFile = resumableUploader.resume(sessionId, offset, content);
+        InterruptedUpload upload = interruptedUploads.get(sessionId);
+        if (upload == null) {
+            // Interrupted before this instance started, so there is nothing to finish it with.
+            return new UploadResult(uploadedFile.getId(), false, false);
+        }
+        synchronized (upload) {
+            if (upload.result == null) {
+                upload.result = finishResumed(uploadedFile, upload);
+            }
+            return upload.result;
+        }
+    }
+
+    /**
+     * Remembers where an interrupted upload was going, for {@link #resumeUpload}.
+     *
+     * @return The exception to throw: {@code e}, or a plain IOException for compressed uploads,
+     *         which the client cannot resume since the session's offsets count compressed bytes.
+     */
+    private IOException interrupted(ResumableUploadException e, String folderId, String fileName,
+                                    SalesCsvValidator.Stage csv, boolean replaced) {
+        if (compression.isEnabled()) {
+            return new IOException("Upload interrupted; compressed uploads cannot be resumed, please upload again", e);
+        }
+        interruptedUploads.keySet().removeIf(sessionId -> !resumableUploader.hasSession(sessionId));
+        interruptedUploads.put(e.getSessionId(), new InterruptedUpload(folderId, fileName, csv.restart(), replaced));
+        return e;
+    }
+
+    private UploadResult finishResumed(File uploadedFile, InterruptedUpload upload) throws IOException {
+        try (InputStream stored = upload.csv.wrap(openDownloadStream(uploadedFile.getId(), -1, -1))) {
+            stored.transferTo(OutputStream.nullOutputStream());
+        } catch (SalesCsvValidationException e) {
+            if (!upload.replaced) {
+                driveCalls.execute("files.delete", () -> driveService.files().delete(uploadedFile.getId()).execute());
+            }
+            throw e;
+        }
+
+        String checksum = uploadedFile.getMd5Checksum();
+        DriveFileMetadata duplicate = !upload.replaced && checksum != null && "skip".equalsIgnoreCase(dedupPolicy)
+                ? findDuplicate(upload.folderId, checksum, upload.fileName, uploadedFile.getId()) : null;
+        if (duplicate != null) {
+            driveCalls.execute("files.delete", () -> driveService.files().delete(uploadedFile.getId()).execute());
+            hashIndex.forget(uploadedFile.getId());
+            return new UploadResult(duplicate.getId(), true, false);
+        }
+        storeStats(uploadedFile, upload.csv);
+        recordUploaded(uploadedFile, upload.folderId, checksum);
+        return new UploadResult(uploadedFile.getId(), false, upload.replaced);
+    }
+
+    public UploadSessionStatus getUploadStatus(String sessionId) throws IOException {
+        return resumableUploader.getStatus(sessionId);
+    }
+
+    private UploadResult uploadToCountryFolder(String monthNumber, String market, String country, String countryFolderId,
+                                               FolderUpload upload) throws IOException {
+        try {
+            return upload.to(countryFolderId);
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+            // A cached folder was deleted in Drive; forget the chain and resolve it again.
+            invalidateCountryFolder(monthNumber, market, country);
+            countryFolderId = resolveCountryFolder(monthNumber, market, country);
+            return upload.to(countryFolderId);
+        }
+    }
+
+    private UploadResult createFile(MultipartFile file, String fileName, String parentFolderId,
+                                    SalesCsvValidator.Stage csv) throws IOException {
+        // The multipart file is already on local disk, so it is hashed before anything is sent. The hashing
+        // pass also validates it, so a duplicate is only returned for content that would have been accepted.
+        String checksum = null;
+        DriveFileMetadata sameName = null;
+        if (!"off".equalsIgnoreCase(dedupPolicy)) {
+            checksum = md5Of(compression.compress(csv.wrap(file.getInputStream())));
+            DriveFileMetadata duplicate = findDuplicate(parentFolderId, checksum, fileName, null);
+            if (duplicate != null) {
+                return new UploadResult(duplicate.getId(), true, false);
+            }
+            if ("replace".equalsIgnoreCase(dedupPolicy)) {
+                sameName = hashIndex.findByName(parentFolderId, fileName, this::listFilesInFolder);
+            }
+        }
+
+        String mimeType = compression.storedMimeType(file.getContentType());
+        File fileMetadata = newFileMetadata(fileName, mimeType, parentFolderId);
+        String existingId = sameName != null ? sameName.getId() : null;
+        Timer.Sample transfer = metrics.startTimer();
+        File uploadedFile;
 
-        InputStreamContent mediaContent = new InputStreamContent(file.getContentType(), file.getInputStream());
+        // Large files go through a resumable session so a network blip only costs one chunk.
+        if ("resumable".equalsIgnoreCase(uploadMode) && file.getSize() > resumableUploader.getChunkSize()) {
+            long storedLength = compression.isEnabled() ? -1 : file.getSize();
+            try (InputStream content = compression.compress(csv.wrap(file.getInputStream()))) {
+                uploadedFile = existingId != null
+                        ? resumableUploader.replace(existingId, fileName, mimeType, storedLength, content)
+                        : resumableUploader.upload(fileMetadata, mimeType, storedLength, content);
+            } catch (ResumableUploadException e) {
+                throw interrupted(e, parentFolderId, fileName, csv, existingId != null);
+            }
+        } else if (existingId != null) {
+            uploadedFile = driveCalls.execute("files.update.media", () -> driveService.files()
+                    .update(existingId, new File(), new InputStreamContent(mimeType, compression.compress(csv.wrap(file.getInputStream()))))
+                    .setSupportsAllDrives(true)
+                    .setFields("id, name, webContentLink, webViewLink, mimeType, size, md5Checksum, modifiedTime")
+                    .execute());
+        } else {
+            // The media content is rebuilt on every attempt, since a retry needs to re-read the file.
+            uploadedFile = driveCalls.execute("files.create.media", () -> driveService.files()
+            .create(fileMetadata, new InputStreamContent(mimeType, compression.compress(csv.wrap(file.getInputStream()))))
+            .setSupportsAllDrives(true) // <-- THIS LINE
+            .setFields("id, name, webContentLink, webViewLink, mimeType, size, md5Checksum, modifiedTime")
+            .execute());
+        }
+        metrics.recordUpload(transfer, uploadedFile.getSize() != null ? uploadedFile.getSize() : file.getSize());
+
+        storeStats(uploadedFile, csv);
+        recordUploaded(uploadedFile, parentFolderId, checksum);
+        return new UploadResult(uploadedFile.getId(), false, existingId != null);
+    }
+
+    /**
+     * Saves the statistics computed during the upload as the file's appProperties. Drive takes the
+     * metadata before the content, so this is a separate update once the content has been read; it
+     * adds to the codec property set at creation, which is kept out of the statistics' share of the
+     * 30 allowed. A failure here is logged but does not fail the upload, which has already succeeded.
+     */
+    private void storeStats(File uploadedFile, SalesCsvValidator.Stage csv) {
+        Map<String, String> codec = compression.codecProperties();
+        Map<String, String> properties = csv.getAppProperties(codec != null ? codec.size() : 0);
+        if (properties == null) {
+            return;
+        }
+        try {
+            driveCalls.execute("files.update.properties", () -> driveService.files()
+                    .update(uploadedFile.getId(), new File().setAppProperties(properties))
+                    .setSupportsAllDrives(true)
+                    .setFields("id")
+                    .execute());
+            uploadedFile.setAppProperties(properties);
+        } catch (IOException e) {
+            System.err.println("Could not store CSV statistics on file " + uploadedFile.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a file in the folder with this name whose content has this MD5, after confirming with Drive
+     * that the indexed file still exists with that name and content; stale index entries are dropped.
+     *
+     * @param excludeId A file that is not a duplicate of itself, i.e. the one just uploaded; may be null.
+     */
+    private DriveFileMetadata findDuplicate(String folderId, String checksum, String fileName, String excludeId)
+            throws IOException {
+        DriveFileMetadata candidate = hashIndex.findByHash(folderId, checksum, fileName, excludeId, this::listFilesInFolder);
+        if (candidate == null) {
+            return null;
+        }
+        try {
+            File current = driveCalls.execute("files.get", () -> driveService.files().get(candidate.getId())
+                    .setSupportsAllDrives(true)
+                    .setFields("id, name, md5Checksum, trashed")
+                    .execute());
+            if (!Boolean.TRUE.equals(current.getTrashed()) && checksum.equals(current.getMd5Checksum())
+                    && fileName.equals(current.getName())) {
+                return candidate;
+            }
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+        }
+        hashIndex.forget(candidate.getId());
+        return null;
+    }
+
+    /**
+     * MD5 of the bytes that will be stored; for compressed storage the file is compressed once more
+     * for this, since Drive's md5Checksum is of the compressed bytes.
+     */
+    private static String md5Of(InputStream content) throws IOException {
+        MessageDigest md5 = newMd5();
+        try (InputStream in = new DigestInputStream(content, md5)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(md5.digest());
+    }
 
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is required by every Java platform", e);
+        }
+    }
+
+    /**
+     * Makes a newly created file visible in the metadata mirror without waiting for the next change poll.
+     */
+    private String recordCreated(File file, String parentId) {
+        metadataMirror.recordCreated(file, parentId);
+        return file.getId();
+    }
+
+    /**
+     * Records an uploaded (or replaced) file in the metadata mirror and the dedup hash index.
+     *
+     * @param checksum The MD5 we computed, used if Drive did not return one.
+     */
+    private void recordUploaded(File file, String parentId, String checksum) {
+        recordCreated(file, parentId);
+        DriveFileMetadata metadata = DriveFileMetadata.from(file);
+        if (metadata.getMd5Checksum() == null) {
+            metadata.setMd5Checksum(checksum);
+        }
+        hashIndex.record(parentId, metadata);
+    }
+
+    private File newFileMetadata(String fileName, String mimeType, String parentFolderId) {
         File fileMetadata = new File(); // This refers to com.google.api.services.drive.model.File
-        fileMetadata.setName(newFileName);
-        fileMetadata.setMimeType(file.getContentType());
-        fileMetadata.setParents(Collections.singletonList(countryFolderId));
+        fileMetadata.setName(fileName);
+        fileMetadata.setMimeType(mimeType);
+        fileMetadata.setParents(Collections.singletonList(parentFolderId));
+        fileMetadata.setAppProperties(compression.codecProperties()); // Sent with the metadata, before the content
+        return fileMetadata;
+    }
 
-        File uploadedFile = driveService.files().create(fileMetadata, mediaContent)
-        .setSupportsAllDrives(true) // <-- THIS LINE
-        .setFields("id, name, webContentLink, webViewLink, mimeType, size")
-        .execute();
+    @FunctionalInterface
+    private interface FolderUpload {
+        UploadResult to(String countryFolderId) throws IOException;
+    }
+
+    /**
+     * Resolves (creating as needed) the month -> market -> country folder chain under the root folder.
+     * Each level goes through the folder cache, so a warm chain costs no Drive calls.
+     */
+    String resolveCountryFolder(String monthNumber, String market, String country) throws IOException {
+        String monthFolderId = cachedFolder(rootFolderId, monthName(monthNumber));
+        String marketFolderId = cachedFolder(monthFolderId, market);
+        return cachedFolder(marketFolderId, country);
+    }
+
+    /**
+     * {@link #resolveCountryFolder}, recorded as the folder_resolution phase of an upload.
+     */
+    private String timedResolveCountryFolder(String monthNumber, String market, String country) throws IOException {
+        Timer.Sample folderResolution = metrics.startTimer();
+        try {
+            return resolveCountryFolder(monthNumber, market, country);
+        } finally {
+            metrics.recordUploadPhase("folder_resolution", folderResolution);
+        }
+    }
+
+    private void invalidateCountryFolder(String monthNumber, String market, String country) {
+        String monthName = monthName(monthNumber);
+        String monthFolderId = folderCache.peek(rootFolderId, monthName);
+        folderCache.invalidate(rootFolderId, monthName);
+        if (monthFolderId != null) {
+            String marketFolderId = folderCache.peek(monthFolderId, market);
+            folderCache.invalidate(monthFolderId, market);
+            if (marketFolderId != null) {
+                folderCache.invalidate(marketFolderId, country);
+            }
+        }
+    }
+
+    private String cachedFolder(String parentId, String folderName) throws IOException {
+        return folderCache.resolve(parentId, folderName, () -> findOrCreateFolder(parentId, folderName));
+    }
 
-        return uploadedFile.getId();
+    private static String monthName(String monthNumber) {
+        return Month.of(Integer.parseInt(monthNumber)).getDisplayName(java.time.format.TextStyle.FULL, Locale.ENGLISH);
+    }
+
+    public Map<String, Long> getFolderCacheStats() {
+        return folderCache.getStats();
+    }
+
+    public Map<String, Number> getRateLimiterStats() {
+        return driveCalls.getStats();
     }
 
     private String findOrCreateFolder(String parentId, String folderName) throws IOException {
         String query = String.format("name = '%s' and '%s' in parents and mimeType = 'application/vnd.google-apps.folder' and trashed = false", folderName, parentId);
 
-        FileList result = driveService.files().list()
+        FileList result = driveCalls.execute("files.list.folder", () -> driveService.files().list()
         .setQ(query)
         .setSpaces("drive")
         .setIncludeItemsFromAllDrives(true)
         .setSupportsAllDrives(true) // <-- THIS LINE
         .setFields("files(id, name)")
-        .execute();
+        .execute());
 
         List<File> files = result.getFiles(); // This refers to com.google.api.services.drive.model.File
 
@@ -182,52 +655,456 @@ public class GoogleDriveService {
             fileMetadata.setMimeType("application/vnd.google-apps.folder");
             fileMetadata.setParents(Collections.singletonList(parentId));
 
-        File createdFolder = driveService.files().create(fileMetadata)
+        File createdFolder = driveCalls.execute("files.create.folder", () -> driveService.files().create(fileMetadata)
         .setSupportsAllDrives(true) // <-- THIS LINE
-        .setFields("id, name")
-        .execute();
+        .setFields("id, name, mimeType, createdTime, modifiedTime")
+        .execute());
+
+            return recordCreated(createdFolder, parentId);
+        }
+    }
+
+    public DriveFileMetadata getFileMetadata(String fileId) throws IOException {
+        File file = driveCalls.execute("files.get", () -> driveService.files().get(fileId)
+                .setSupportsAllDrives(true)
+                .setFields("id, name, mimeType, size, md5Checksum, webContentLink, webViewLink, createdTime, modifiedTime, appProperties")
+                .execute());
+        return DriveFileMetadata.from(file);
+    }
+
+    /**
+     * Opens the file's media as a stream straight from Drive, without buffering it in memory.
+     * When {@code rangeStart} is non-negative only bytes rangeStart..rangeEnd (inclusive) are
+     * requested; a negative {@code rangeEnd} means "to the end of the file".
+     * The caller is responsible for closing the returned stream; closing it records the download's
+     * size and throughput.
+     */
+    public InputStream openDownloadStream(String fileId, long rangeStart, long rangeEnd) throws IOException {
+        return metrics.meterDownload(driveCalls.execute("files.get.media", () -> {
+            Drive.Files.Get request = driveService.files().get(fileId).setSupportsAllDrives(true);
+            if (rangeStart >= 0) {
+                request.getRequestHeaders().setRange("bytes=" + rangeStart + "-" + (rangeEnd >= 0 ? rangeEnd : ""));
+            }
+            return request.executeMediaAsInputStream();
+        }));
+    }
+
+    /**
+     * Opens the file's content from the local content cache, fetching the whole file from Drive into
+     * the cache first on a miss.
+     *
+     * @param served Number of bytes the caller will serve, reported as saved Drive traffic on a hit.
+     * @return A channel over the full file, or null if the file is not cacheable (too large, no size or
+     *         version, or caching disabled); use {@link #openDownloadStream} then.
+     */
+    public FileChannel openCachedContent(DriveFileMetadata metadata, long served) throws IOException {
+        if (!contentCache.isCacheable(metadata)) {
+            return null;
+        }
+        return contentCache.open(metadata, served, () -> openDownloadStream(metadata.getId(), -1, -1));
+    }
 
-            return createdFolder.getId();
+    /**
+     * Opens the file's content from the local content cache if it is there, without fetching it on a miss.
+     *
+     * @param served Number of bytes the caller will serve, reported as saved Drive traffic on a hit.
+     * @return A channel over the full file, or null on a miss or if the file is not cacheable; use
+     *         {@link #openCachingDownloadStream} or {@link #openDownloadStream} then.
+     */
+    public FileChannel openCachedContentIfPresent(DriveFileMetadata metadata, long served) throws IOException {
+        return contentCache.openIfCached(metadata, served);
+    }
+
+    /**
+     * Streams the file's full content from Drive, copying it into the content cache on the way if it
+     * fits, so the caller gets the first bytes without waiting for the whole file.
+     */
+    public InputStream openCachingDownloadStream(DriveFileMetadata metadata) throws IOException {
+        return contentCache.cacheWhileReading(metadata, openDownloadStream(metadata.getId(), -1, -1));
+    }
+
+    /**
+     * Opens the file's content as the original CSV, decompressing gzip-stored files on the fly. Served
+     * from the content cache on a hit, otherwise streamed from Drive (filling the cache on the way).
+     */
+    public InputStream openDecodedStream(DriveFileMetadata metadata) throws IOException {
+        FileChannel cached = metadata.getSize() != null ? openCachedContentIfPresent(metadata, metadata.getSize()) : null;
+        InputStream stored = cached != null ? Channels.newInputStream(cached) : openCachingDownloadStream(metadata);
+        return DriveCompression.decode(metadata, stored);
+    }
+
+    /**
+     * Lists the files to export from a month/market folder (every country in it) or a single
+     * month/market/country folder, without creating anything. Only files with binary content are
+     * included; ZIP paths mirror the Drive folders, e.g. "March/Amazon/US/Bryco-...csv". Files stored
+     * compressed are exported decompressed, under their .csv name.
+     *
+     * @param country The country folder, or null for all countries of the market.
+     * @throws FileNotFoundException if one of the folders does not exist.
+     */
+    public List<FolderExportEntry> planFolderExport(String monthNumber, String market, String country) throws IOException {
+        String monthName = monthName(monthNumber);
+        DriveFileMetadata monthFolder = findChildFolder(rootFolderId, monthName);
+        DriveFileMetadata marketFolder = monthFolder != null ? findChildFolder(monthFolder.getId(), market) : null;
+        if (marketFolder == null) {
+            throw new FileNotFoundException("Folder not found: " + monthName + "/" + market);
+        }
+        String prefix = monthName + "/" + market + "/";
+
+        List<FolderExportEntry> entries = new ArrayList<>();
+        if (country != null && !country.isEmpty()) {
+            DriveFileMetadata countryFolder = findChildFolder(marketFolder.getId(), country);
+            if (countryFolder == null) {
+                throw new FileNotFoundException("Folder not found: " + prefix + country);
+            }
+            addExportFiles(countryFolder, prefix, entries);
+            return entries;
+        }
+        for (DriveFileMetadata child : sortedByName(listFilesInFolder(marketFolder.getId()))) {
+            if (DriveMetadataMirror.FOLDER_MIME_TYPE.equals(child.getMimeType())) {
+                addExportFiles(child, prefix, entries);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Streams the planned files to {@code out} as a ZIP, prefetching a bounded window of files in parallel.
+     */
+    public void writeFolderExport(List<FolderExportEntry> entries, OutputStream out) throws IOException {
+        zipExporter.write(entries, out);
+    }
+
+    private void addExportFiles(DriveFileMetadata countryFolder, String prefix, List<FolderExportEntry> entries)
+            throws IOException {
+        String folderPath = prefix + countryFolder.getName().replace('/', '_') + "/";
+        for (DriveFileMetadata file : sortedByName(listFilesInFolder(countryFolder.getId()))) {
+            if (!DriveMetadataMirror.FOLDER_MIME_TYPE.equals(file.getMimeType()) && file.getSize() != null) {
+                entries.add(new FolderExportEntry(folderPath + DriveCompression.decodedName(file).replace('/', '_'), file));
+            }
+        }
+    }
+
+    private DriveFileMetadata findChildFolder(String parentId, String name) throws IOException {
+        for (DriveFileMetadata child : listFilesInFolder(parentId)) {
+            if (DriveMetadataMirror.FOLDER_MIME_TYPE.equals(child.getMimeType()) && name.equals(child.getName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static List<DriveFileMetadata> sortedByName(List<DriveFileMetadata> files) {
+        List<DriveFileMetadata> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparing(DriveFileMetadata::getName));
+        return sorted;
+    }
+
+    /**
+     * Fetches a file for export: through the content cache when it fits, otherwise into a temp file
+     * that is deleted when the returned channel is closed.
+     */
+    private FileChannel openExportContent(DriveFileMetadata file) throws IOException {
+        FileChannel cached = openCachedContent(file, file.getSize());
+        if (cached != null) {
+            return cached;
+        }
+        Path spool = Files.createTempFile("drive-export-", ".part");
+        try {
+            try (InputStream in = openDownloadStream(file.getId(), -1, -1)) {
+                Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
         }
     }
 
-    public byte[] downloadFile(String fileId) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        driveService.files().get(fileId).executeMediaAndDownloadTo(outputStream);
-        return outputStream.toByteArray();
+    public Map<String, Long> getDedupIndexStats() {
+        return hashIndex.getStats();
     }
 
+    public Map<String, Object> getContentCacheStats() {
+        return contentCache.getStats();
+    }
+
+    /**
+     * Lists every file in the folder. Answered from the metadata mirror when it covers the folder,
+     * otherwise from Drive, following its page tokens until the last page.
+     * For very large folders prefer {@link #forEachFileInFolder}, which does not collect the result.
+     */
     public List<DriveFileMetadata> listFilesInFolder(String folderId) throws IOException {
+        List<DriveFileMetadata> mirrored = metadataMirror.listChildren(folderId);
+        if (mirrored != null) {
+            return mirrored;
+        }
+        List<DriveFileMetadata> files = new ArrayList<>();
+        forEachFileInFolder(folderId, MAX_PAGE_SIZE, files::add);
+        return files;
+    }
+
+    /**
+     * Lists a single page of the folder.
+     *
+     * @param pageSize Number of files per page, capped at Drive's maximum of 1000.
+     * @param pageToken The nextPageToken from the previous page, or null for the first page.
+     */
+    public DriveFilePage listFilesInFolder(String folderId, int pageSize, String pageToken) throws IOException {
+        FileList result = listPage(folderId, pageSize, pageToken);
+        List<DriveFileMetadata> files = result.getFiles() == null ? Collections.emptyList()
+                : result.getFiles().stream().map(DriveFileMetadata::from).collect(Collectors.toList());
+        return new DriveFilePage(files, result.getNextPageToken());
+    }
+
+    /**
+     * Walks all pages of the folder lazily, handing each file to {@code consumer} as its page arrives.
+     * Only one page is held in memory at a time.
+     */
+    public void forEachFileInFolder(String folderId, int pageSize, FileConsumer consumer) throws IOException {
+        List<DriveFileMetadata> mirrored = metadataMirror.listChildren(folderId);
+        if (mirrored != null) {
+            for (DriveFileMetadata file : mirrored) {
+                consumer.accept(file);
+            }
+            return;
+        }
+        String pageToken = null;
+        do {
+            FileList result = listPage(folderId, pageSize, pageToken);
+            if (result.getFiles() != null) {
+                for (File file : result.getFiles()) {
+                    consumer.accept(DriveFileMetadata.from(file));
+                }
+            }
+            pageToken = result.getNextPageToken();
+        } while (pageToken != null);
+    }
+
+    private FileList listPage(String folderId, int pageSize, String pageToken) throws IOException {
         String queryFolderId = (folderId != null && !folderId.isEmpty()) ? folderId : rootFolderId;
         String query = "'" + queryFolderId + "' in parents and trashed = false";
 
-        FileList result = driveService.files().list()
+        return driveCalls.execute("files.list", () -> driveService.files().list()
                 .setQ(query)
                 .setSpaces("drive")
-                .setFields("nextPageToken, files(id, name, mimeType, size, webContentLink, webViewLink, createdTime, modifiedTime)")
-                .execute();
-
-        return result.getFiles().stream()
-                .map(file -> new DriveFileMetadata(
-                        file.getId(),
-                        file.getName(),
-                        file.getMimeType(),
-                        file.getSize(),
-                        file.getWebContentLink(),
-                        file.getWebViewLink(),
-                        file.getCreatedTime() != null ? file.getCreatedTime().getValue() : null,
-                        file.getModifiedTime() != null ? file.getModifiedTime().getValue() : null
-                ))
-                .collect(Collectors.toList());
+                .setPageSize(Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE)))
+                .setPageToken(pageToken)
+                .setFields("nextPageToken, files(id, name, mimeType, size, md5Checksum, webContentLink, webViewLink, createdTime, modifiedTime)")
+                .execute());
+    }
+
+    @FunctionalInterface
+    public interface FileConsumer {
+        void accept(DriveFileMetadata file) throws IOException;
     }
 
     public void renameFile(String fileId, String newName) throws IOException {
         File fileMetadata = new File(); // This refers to com.google.api.services.drive.model.File
         fileMetadata.setName(newName);
-        driveService.files().update(fileId, fileMetadata).execute();
+        driveCalls.execute("files.update", () -> driveService.files().update(fileId, fileMetadata).execute());
+        metadataMirror.recordRenamed(fileId, newName);
+        hashIndex.forget(fileId);
     }
 
     public void deleteFile(String fileId) throws IOException {
-        driveService.files().delete(fileId).execute();
+        driveCalls.execute("files.delete", () -> driveService.files().delete(fileId).execute());
+        metadataMirror.recordDeleted(fileId);
+        hashIndex.forget(fileId);
+    }
+
+    /**
+     * Renames many files with Drive batch requests of up to {@value #MAX_BATCH_SIZE} calls each.
+     *
+     * @return One result per request, in request order. A failed file does not fail the others.
+     */
+    public List<BulkOperationResult> renameFiles(List<BulkRenameRequest> renames) {
+        List<String> fileIds = renames.stream().map(BulkRenameRequest::getFileId).collect(Collectors.toList());
+        return runBulk("files.update", fileIds, (batch, index, callback) -> {
+            File fileMetadata = new File();
+            fileMetadata.setName(renames.get(index).getNewName());
+            driveService.files().update(fileIds.get(index), fileMetadata).setFields("id").queue(batch, callback.<File>typed());
+        }, index -> {
+            metadataMirror.recordRenamed(fileIds.get(index), renames.get(index).getNewName());
+            hashIndex.forget(fileIds.get(index));
+        });
+    }
+
+    /**
+     * Deletes many files with Drive batch requests of up to {@value #MAX_BATCH_SIZE} calls each.
+     *
+     * @return One result per file ID, in request order. A failed file does not fail the others.
+     */
+    public List<BulkOperationResult> deleteFiles(List<String> fileIds) {
+        return runBulk("files.delete", fileIds,
+                (batch, index, callback) -> driveService.files().delete(fileIds.get(index)).queue(batch, callback.<Void>typed()),
+                index -> {
+                    metadataMirror.recordDeleted(fileIds.get(index));
+                    hashIndex.forget(fileIds.get(index));
+                });
+    }
+
+    @FunctionalInterface
+    private interface BatchItem {
+        void queue(BatchRequest batch, int index, ItemCallback callback) throws IOException;
+    }
+
+    /**
+     * Sends the items in batches, then re-sends only the items that are still unanswered or failed with a
+     * retryable status (after a backoff), up to {@code google.drive.bulk.max-item-retries} times. Each
+     * batch is sent once per round; items that already succeeded are never sent again.
+     */
+    private List<BulkOperationResult> runBulk(String operation, List<String> fileIds, BatchItem item,
+                                              IntConsumer onSuccess) {
+        List<BulkOperationResult> results = new ArrayList<>();
+        for (int i = 0; i < fileIds.size(); i++) {
+            results.add(new BulkOperationResult(i, fileIds.get(i), false, 0, null, 0));
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < fileIds.size(); i++) {
+            pending.add(i);
+        }
+        for (int round = 0; !pending.isEmpty(); round++) {
+            if (round > 0) {
+                try {
+                    driveCalls.backoff(round - 1);
+                } catch (IOException e) {
+                    break; // Interrupted; report the items as they stand.
+                }
+            }
+            Set<Integer> retry = new LinkedHashSet<>();
+            boolean lastRound = round >= bulkMaxItemRetries;
+            for (int from = 0; from < pending.size(); from += MAX_BATCH_SIZE) {
+                List<Integer> chunk = pending.subList(from, Math.min(pending.size(), from + MAX_BATCH_SIZE));
+                Set<Integer> answered = new HashSet<>();
+                try {
+                    driveCalls.executeOnce("files.batch", chunk.size(), () -> {
+                        BatchRequest batch = newBatch();
+                        for (int index : chunk) {
+                            item.queue(batch, index,
+                                    new ItemCallback(results.get(index), answered, lastRound ? null : retry, onSuccess));
+                        }
+                        batch.execute();
+                        return null;
+                    });
+                    for (int index : chunk) {
+                        if (!answered.contains(index) && !lastRound) {
+                            retry.add(index); // Left out of the batch response; send it again.
+                        }
+                    }
+                } catch (IOException e) {
+                    // The batch itself failed; every item it did not answer shares its fate.
+                    // BatchRequest reports an HTTP error on the batch as a plain HttpResponseException.
+                    int status = e instanceof HttpResponseException ? ((HttpResponseException) e).getStatusCode() : 0;
+                    boolean retryable = e instanceof DriveRateLimitException || DriveRequestExecutor.isRetryable(e)
+                            || (e instanceof HttpResponseException && DriveRequestExecutor.isRetryable(status, null));
+                    for (int index : chunk) {
+                        if (answered.contains(index)) {
+                            continue;
+                        }
+                        if (retryable && !lastRound) {
+                            retry.add(index);
+                        } else {
+                            BulkOperationResult result = results.get(index);
+                            result.setStatus(status);
+                            result.setError(operation + " batch failed: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+            pending = new ArrayList<>(retry);
+        }
+        return results;
+    }
+
+    /**
+     * Batch requests must go to the Drive-specific endpoint; the global batch endpoint the generated
+     * client defaults to has been retired.
+     */
+    private BatchRequest newBatch() {
+        // The client's own initializer, so the batch envelope carries the credentials and timeouts too.
+        return driveService.batch(driveService.getRequestFactory().getInitializer())
+                .setBatchUrl(new GenericUrl(driveService.getRootUrl() + "batch/drive/v3"));
+    }
+
+    /**
+     * Records one batch item's outcome in its result; retryable failures are queued for the next round.
+     */
+    private static class ItemCallback extends JsonBatchCallback<Object> {
+
+        private final BulkOperationResult result;
+        private final Set<Integer> answered;
+        private final Set<Integer> retry;
+        private final IntConsumer onSuccess;
+
+        ItemCallback(BulkOperationResult result, Set<Integer> answered, Set<Integer> retry, IntConsumer onSuccess) {
+            this.result = result;
+            this.answered = answered;
+            this.retry = retry;
+            this.onSuccess = onSuccess;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> JsonBatchCallback<T> typed() {
+            return (JsonBatchCallback<T>) (JsonBatchCallback<?>) this;
+        }
+
+        @Override
+        public void onSuccess(Object response, HttpHeaders responseHeaders) {
+            answered.add(result.getIndex());
+            result.setAttempts(result.getAttempts() + 1);
+            result.setSuccess(true);
+            result.setStatus(200);
+            result.setError(null);
+            onSuccess.accept(result.getIndex());
+        }
+
+        @Override
+        public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+            answered.add(result.getIndex());
+            result.setAttempts(result.getAttempts() + 1);
+            result.setSuccess(false);
+            result.setStatus(error.getCode());
+            result.setError(error.getMessage());
+            if (retry != null && DriveRequestExecutor.isRetryable(error.getCode(), error)) {
+                retry.add(result.getIndex());
+            }
+        }
+    }
+
+    /**
+     * Searches sales files using the metadata mirror only; no Drive calls are made.
+     *
+     * @return The matching files, or null if the mirror has not finished its initial crawl.
+     */
+    public List<SalesFileEntry> searchSalesFiles(String brand, String market, String country, String month,
+                                                 String fromDate, String toDate) {
+        if (!metadataMirror.isReady()) {
+            return null;
+        }
+        return metadataMirror.search(brand, market, country, month, fromDate, toDate);
+    }
+
+    public Map<String, Object> getMirrorStats() {
+        return metadataMirror.getStats();
+    }
+
+    /**
+     * Where an interrupted resumable upload was going, and its outcome once a resume has finished it.
+     */
+    private static class InterruptedUpload {
+        private final String folderId;
+        private final String fileName;
+        private final SalesCsvValidator.Stage csv;
+        private final boolean replaced;
+        private UploadResult result; // Guarded by this
+
+        private InterruptedUpload(String folderId, String fileName, SalesCsvValidator.Stage csv, boolean replaced) {
+            this.folderId = folderId;
+            this.fileName = fileName;
+            this.csv = csv;
+            this.replaced = replaced;
+        }
     }
 }
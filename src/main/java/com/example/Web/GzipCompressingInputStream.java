@@ -0,0 +1,94 @@
+package com.example.Web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Reads {@code in} as a gzip stream (RFC 1952), compressing as the caller pulls bytes. The Drive
+ * uploaders read their content from an InputStream, which {@link java.util.zip.GZIPOutputStream}
+ * cannot feed without buffering the whole file; this keeps memory use to two fixed buffers.
+ * The header carries no timestamp or name, so the same content always compresses to the same bytes.
+ */
+class GzipCompressingInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Magic, deflate, no flags, no mtime, no extra flags, unknown OS.
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final InputStream in;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[BUFFER_SIZE];
+    private int headerPosition;
+    private byte[] trailer;
+    private int trailerPosition;
+    private boolean endOfInput;
+
+    GzipCompressingInputStream(InputStream in, int level) {
+        this.in = in;
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (headerPosition < HEADER.length) {
+            int count = Math.min(length, HEADER.length - headerPosition);
+            System.arraycopy(HEADER, headerPosition, buffer, offset, count);
+            headerPosition += count;
+            return count;
+        }
+        while (!deflater.finished()) {
+            int compressed = deflater.deflate(buffer, offset, length);
+            if (compressed > 0) {
+                return compressed;
+            }
+            if (deflater.needsInput() && !endOfInput) {
+                int read = in.read(input);
+                if (read == -1) {
+                    endOfInput = true;
+                    deflater.finish();
+                } else if (read > 0) {
+                    crc.update(input, 0, read);
+                    deflater.setInput(input, 0, read);
+                }
+            }
+        }
+        if (trailer == null) {
+            trailer = new byte[8];
+            writeIntLE(trailer, 0, crc.getValue());
+            writeIntLE(trailer, 4, deflater.getBytesRead()); // ISIZE is the input size modulo 2^32
+        }
+        if (trailerPosition == trailer.length) {
+            return -1;
+        }
+        int count = Math.min(length, trailer.length - trailerPosition);
+        System.arraycopy(trailer, trailerPosition, buffer, offset, count);
+        trailerPosition += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        in.close();
+    }
+
+    private static void writeIntLE(byte[] target, int offset, long value) {
+        for (int i = 0; i < 4; i++) {
+            target[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.Web;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The on-disk store behind {@link DriveContentCache} and {@link SalesColumnarCache}: one file per
+ * entry in a directory, with the total size bounded and the least recently used entries evicted first.
+ *
+ * Keys are {@code <fileId>.<version>}; storing a new version of a file drops the old one. Concurrent
+ * fills of the same key are single-flight: one caller writes the entry while the others wait for it.
+ * The index is rebuilt from the directory on startup, and anything but complete entries is deleted.
+ */
+class LruDiskCache {
+
+    /**
+     * Writes the content of a missing entry to {@code target}.
+     */
+    @FunctionalInterface
+    interface EntryWriter {
+        void write(Path target) throws IOException;
+    }
+
+    /**
+     * Opens a stored entry's file, e.g. as a channel or a column file.
+     */
+    @FunctionalInterface
+    interface EntryOpener<T> {
+        T open(Path file) throws IOException;
+    }
+
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private final Path directory;
+    private final String suffix;
+    private final long maxBytes;
+    private final String description;
+
+    // Access-ordered cache key -> file size, so iteration order is least recently used first.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> keysByFileId = new HashMap<>();
+    private long totalBytes;
+    // Fills in progress, completed with whether the entry was stored.
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param suffix      File name suffix of complete entries, e.g. ".content".
+     * @param description What an entry is, for log messages (e.g. "cached file").
+     */
+    LruDiskCache(Path directory, String suffix, long maxBytes, String description) {
+        this.directory = directory;
+        this.suffix = suffix;
+        this.maxBytes = maxBytes;
+        this.description = description;
+    }
+
+    /**
+     * Rebuilds the index from entries left by a previous run; everything else in the directory is deleted.
+     */
+    void load() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.collect(Collectors.toList());
+        }
+        files.sort(Comparator.comparingLong(LruDiskCache::lastModified));
+        synchronized (entries) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(suffix)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                String key = name.substring(0, name.length() - suffix.length());
+                long size = Files.size(file);
+                String previous = keysByFileId.put(fileIdOf(key), key);
+                if (previous != null) {
+                    remove(previous);
+                }
+                entries.put(key, size);
+                totalBytes += size;
+            }
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Opens the entry under the index lock, so it cannot be evicted between lookup and open.
+     *
+     * @return The opened entry, or null if it is not stored.
+     */
+    <T> T openIfPresent(String key, EntryOpener<T> opener) throws IOException {
+        synchronized (entries) {
+            if (entries.get(key) == null) {
+                return null;
+            }
+            try {
+                return opener.open(entryPath(key));
+            } catch (NoSuchFileException e) {
+                // Deleted behind our back; forget it so it is filled again.
+                totalBytes -= entries.remove(key);
+                keysByFileId.remove(fileIdOf(key), key);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Stores the entry with {@code writer}, unless a fill of it is already running, in which case that
+     * fill is awaited instead (and taken over if it is abandoned without storing the entry).
+     *
+     * @return Whether this call wrote the entry; false if another caller's fill stored it.
+     */
+    boolean fill(String key, EntryWriter writer) throws IOException {
+        while (true) {
+            CompletableFuture<Boolean> fill = new CompletableFuture<>();
+            CompletableFuture<Boolean> existing = inFlight.putIfAbsent(key, fill);
+            if (existing != null) {
+                if (await(key, existing)) {
+                    return false;
+                }
+                continue;
+            }
+            try {
+                store(key, writer);
+                fill.complete(true);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                fill.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, fill);
+            }
+        }
+    }
+
+    /**
+     * Claims the key for a fill the caller writes itself, to a {@link #partialPath} it then
+     * {@link #publish publishes}; the fill must be ended with {@link #endFill} either way.
+     *
+     * @return The claimed fill, or null if a fill of the key is already running.
+     */
+    CompletableFuture<Boolean> beginFill(String key) {
+        CompletableFuture<Boolean> fill = new CompletableFuture<>();
+        return inFlight.putIfAbsent(key, fill) == null ? fill : null;
+    }
+
+    /**
+     * Releases a fill claimed with {@link #beginFill}, waking the callers waiting for it.
+     */
+    void endFill(String key, CompletableFuture<Boolean> fill, boolean stored) {
+        inFlight.remove(key, fill);
+        fill.complete(stored);
+    }
+
+    /**
+     * Moves a complete entry into place and adds it to the index.
+     */
+    void publish(String key, Path partial, long size) throws IOException {
+        Files.move(partial, entryPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (entries) {
+            String previous = keysByFileId.put(fileIdOf(key), key);
+            if (previous != null && !previous.equals(key)) {
+                remove(previous); // An older version of the same file is stale now.
+            }
+            Long replaced = entries.put(key, size);
+            totalBytes += size - (replaced != null ? replaced : 0);
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * A file in the cache directory to write an entry to before it is published; unique per thread.
+     */
+    Path partialPath(String key) {
+        return directory.resolve(key + "." + Thread.currentThread().getId() + PARTIAL_SUFFIX);
+    }
+
+    Path entryPath(String key) {
+        return directory.resolve(key + suffix);
+    }
+
+    long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Adds evictions, files, sizeBytes and maxSizeBytes to a cache's stats.
+     */
+    void addStats(Map<String, Object> stats) {
+        stats.put("evictions", evictions.get());
+        synchronized (entries) {
+            stats.put("files", entries.size());
+            stats.put("sizeBytes", totalBytes);
+        }
+        stats.put("maxSizeBytes", maxBytes);
+    }
+
+    void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + description + " " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void store(String key, EntryWriter writer) throws IOException {
+        Path partial = partialPath(key);
+        try {
+            writer.write(partial);
+            publish(key, partial, Files.size(partial));
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.getValue();
+            keysByFileId.remove(fileIdOf(entry.getKey()), entry.getKey());
+            deleteQuietly(entryPath(entry.getKey()));
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        deleteQuietly(entryPath(key));
+    }
+
+    private static String fileIdOf(String key) {
+        return key.substring(0, key.lastIndexOf('.'));
+    }
+
+    /**
+     * @return Whether the awaited fill stored the entry; false if it was abandoned before the end.
+     */
+    private boolean await(String key, CompletableFuture<Boolean> fill) throws IOException {
+        try {
+            return fill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a shared fill of " + description + " " + key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Shared fill of " + description + " " + key + " failed", e.getCause());
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
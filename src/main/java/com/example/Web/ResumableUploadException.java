@@ -0,0 +1,27 @@
+package com.example.Web;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a resumable upload gives up after retrying a chunk. The session stays open in Drive,
+ * so the client can continue from {@link #getCommittedBytes()} instead of starting over.
+ */
+public class ResumableUploadException extends IOException {
+
+    private final String sessionId;
+    private final long committedBytes;
+
+    public ResumableUploadException(String sessionId, long committedBytes, Throwable cause) {
+        super("Upload interrupted after " + committedBytes + " bytes: " + cause.getMessage(), cause);
+        this.sessionId = sessionId;
+        this.committedBytes = committedBytes;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getCommittedBytes() {
+        return committedBytes;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Totals of one group of an aggregation query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesAggregateGroup {
+    private Map<String, String> group; // Value of each groupBy dimension (e.g., {"brand": "Bryco"}); empty for the grand total
+    private long rows; // Number of CSV rows counted
+    private Map<String, BigDecimal> sums; // Sum of each requested column over those rows (e.g., {"units": 1520})
+}
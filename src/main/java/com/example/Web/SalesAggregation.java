@@ -0,0 +1,22 @@
+package com.example.Web;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of an aggregation query over the uploaded sales files.
+ */
+@Data
+@NoArgsConstructor
+public class SalesAggregation {
+    private List<String> groupBy; // Dimensions the rows are grouped by (brand, market, country, month)
+    private List<String> sum; // Columns summed
+    private List<SalesAggregateGroup> groups; // One entry per group, sorted by the group values
+    private int filesScanned; // Sales files matching the filters that were scanned
+    private int filesIndexed; // Of those, files downloaded and parsed because their cached columns were missing or stale
+    private Map<String, String> failedFiles; // File ID -> why it was left out (e.g., it fails CSV validation)
+    private long durationMillis; // Time the query took
+}
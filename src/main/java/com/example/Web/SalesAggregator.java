@@ -0,0 +1,442 @@
+package com.example.Web;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Answers aggregation queries (row counts and column sums, grouped by brand, market, country and/or
+ * month) over sales files. Each file is scanned from its cached columns ({@link SalesColumnarCache}),
+ * downloading and parsing only files whose columns are missing or stale. Files are scanned in
+ * parallel on a fork-join pool, and large files are further split into row ranges; downloads are
+ * managed blocks, so a worker waiting on Drive does not hold up the scan.
+ * <p>
+ * The month dimension is the file's month folder. Rows are limited to fromDate..toDate by the CSV's
+ * date column; a file without one is counted whole if its name's date range overlaps. A summed column
+ * missing from a file (or not numeric in it) adds nothing for that file.
+ */
+@Component
+public class SalesAggregator {
+
+    public static final List<String> DIMENSIONS = List.of("brand", "market", "country", "month");
+
+    /**
+     * Opens a sales file's content as the original CSV (decompressed if it is stored compressed).
+     */
+    @FunctionalInterface
+    public interface ContentOpener {
+        InputStream open(DriveFileMetadata file) throws IOException;
+    }
+
+    // Row ranges larger than this are split into parallel subtasks.
+    private static final int ROWS_PER_TASK = 64 * 1024;
+
+    private final SalesColumnarCache cache;
+    private final SalesCsvValidator csvValidator;
+    private final int parallelism;
+    private ForkJoinPool pool;
+
+    public SalesAggregator(SalesColumnarCache cache, SalesCsvValidator csvValidator,
+                           @Value("${google.drive.aggregation.parallelism:8}") int parallelism) {
+        this.cache = cache;
+        this.csvValidator = csvValidator;
+        this.parallelism = parallelism;
+    }
+
+    @PostConstruct
+    public void start() {
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("sales-aggregation-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Aggregates the given files.
+     *
+     * @param groupBy  Dimensions to group by, from {@link #DIMENSIONS}; empty for a single total.
+     * @param sum      Numeric columns to sum (case-insensitive); empty to count rows only.
+     * @param fromDate First row date to count (YYYY-MM-DD), or null.
+     * @param toDate   Last row date to count (YYYY-MM-DD), or null.
+     * @throws IllegalArgumentException for an unknown dimension or a malformed date.
+     * @throws DriveRateLimitException if Drive throttled a download; other per-file failures are
+     *                                 reported in {@link SalesAggregation#getFailedFiles()} instead.
+     */
+    public SalesAggregation aggregate(List<SalesFileEntry> files, List<String> groupBy, List<String> sum,
+                                      String fromDate, String toDate, ContentOpener opener) throws IOException {
+        long start = System.currentTimeMillis();
+        List<String> sums = sum.stream().map(String::trim).filter(column -> !column.isEmpty()).collect(Collectors.toList());
+        List<String> dimensions = new ArrayList<>();
+        for (String dimension : groupBy) {
+            String name = dimension.trim().toLowerCase(Locale.ROOT);
+            if (!DIMENSIONS.contains(name)) {
+                throw new IllegalArgumentException("Unknown groupBy dimension '" + dimension + "'; expected one of " + DIMENSIONS);
+            }
+            dimensions.add(name);
+        }
+        Query query = new Query(dimensions, sums, epochDay("fromDate", fromDate, Integer.MIN_VALUE),
+                epochDay("toDate", toDate, Integer.MAX_VALUE), opener);
+
+        Partial result = new Partial();
+        if (!files.isEmpty()) {
+            try {
+                result = pool.invoke(new FilesTask(files, 0, files.size(), query));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        List<Map.Entry<List<String>, Totals>> sorted = new ArrayList<>(result.groups.entrySet());
+        sorted.sort(Map.Entry.comparingByKey(SalesAggregator::compareKeys));
+        List<SalesAggregateGroup> groups = new ArrayList<>();
+        for (Map.Entry<List<String>, Totals> group : sorted) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < dimensions.size(); i++) {
+                values.put(dimensions.get(i), group.getKey().get(i));
+            }
+            Map<String, BigDecimal> totals = new LinkedHashMap<>();
+            for (int i = 0; i < sums.size(); i++) {
+                totals.put(sums.get(i), group.getValue().sums[i]);
+            }
+            groups.add(new SalesAggregateGroup(values, group.getValue().rows, totals));
+        }
+
+        SalesAggregation aggregation = new SalesAggregation();
+        aggregation.setGroupBy(dimensions);
+        aggregation.setSum(sums);
+        aggregation.setGroups(groups);
+        aggregation.setFilesScanned(result.scanned);
+        aggregation.setFilesIndexed(result.indexed);
+        aggregation.setFailedFiles(result.failed);
+        aggregation.setDurationMillis(System.currentTimeMillis() - start);
+        return aggregation;
+    }
+
+    public Map<String, Object> getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Scans one file, building its cached columns first if needed.
+     */
+    private Partial scanFile(SalesFileEntry entry, Query query) {
+        Partial partial = new Partial();
+        int fileFromDay;
+        int fileToDay;
+        try {
+            // From Drive properties anyone can edit; a bad one fails this file, not the whole query.
+            fileFromDay = epochDay("fromDate", entry.getFromDate(), Integer.MIN_VALUE);
+            fileToDay = epochDay("toDate", entry.getToDate(), Integer.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            partial.failed.put(entry.getFile().getId(), e.getMessage());
+            return partial;
+        }
+        SalesColumnarCache.Lookup lookup;
+        try {
+            lookup = cache.openIfCached(entry.getFile());
+            if (lookup == null) {
+                lookup = openBuilding(entry, query);
+            }
+        } catch (DriveRateLimitException e) {
+            throw new UncheckedIOException(e); // Fails the whole query with 503; other files would be throttled too.
+        } catch (IOException e) {
+            partial.failed.put(entry.getFile().getId(), e.getMessage());
+            return partial;
+        }
+        SalesColumnFile columns = lookup.getColumns();
+        partial.scanned = 1;
+        partial.indexed = lookup.isBuilt() ? 1 : 0;
+
+        SalesColumnFile.Column[] measures = new SalesColumnFile.Column[query.sums.size()];
+        for (int i = 0; i < measures.length; i++) {
+            measures[i] = columns.column(query.sums.get(i));
+        }
+        // Rows only need their dates checked if the file's range is not entirely inside the query's.
+        boolean filterDates = columns.hasDates()
+                && (query.fromDay > fileFromDay || query.toDay < fileToDay);
+        Totals totals = new RowsTask(columns, measures, 0, columns.getRows(), filterDates, query).compute();
+
+        List<String> key = new ArrayList<>();
+        for (String dimension : query.dimensions) {
+            key.add(dimensionValue(entry, dimension));
+        }
+        partial.groups.put(key, totals);
+        return partial;
+    }
+
+    /**
+     * Opens a file's columns after a cache miss. The download and parse (or the wait for another query
+     * building the same file) run in {@link ForkJoinPool#managedBlock}, so the pool can add a spare
+     * worker to keep scanning while this one waits on Drive.
+     */
+    private SalesColumnarCache.Lookup openBuilding(SalesFileEntry entry, Query query) throws IOException {
+        ColumnBuild build = new ColumnBuild(entry, query);
+        try {
+            ForkJoinPool.managedBlock(build);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while building the columns of " + entry.getFile().getId());
+        }
+        return build.result();
+    }
+
+    /**
+     * Downloads and parses a file into its column file, checking it as its upload would have been.
+     */
+    private void buildColumns(SalesFileEntry entry, Path target, ContentOpener opener) throws IOException {
+        try (SalesColumnFile.Writer writer = new SalesColumnFile.Writer(target.getParent(), target.getFileName().toString());
+             InputStream content = opener.open(entry.getFile());
+             InputStream csv = csvValidator.parse(content, entry.getFromDate(), entry.getToDate(), writer)) {
+            csv.transferTo(OutputStream.nullOutputStream());
+            writer.writeTo(target);
+        }
+    }
+
+    private static String dimensionValue(SalesFileEntry entry, String dimension) {
+        switch (dimension) {
+            case "brand":
+                return entry.getBrand();
+            case "market":
+                return entry.getMarket();
+            case "country":
+                return entry.getCountry();
+            default:
+                return entry.getMonth();
+        }
+    }
+
+    private static int epochDay(String name, String date, int unbounded) {
+        if (date == null || date.isEmpty()) {
+            return unbounded;
+        }
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " '" + date + "' is not a YYYY-MM-DD date");
+        }
+    }
+
+    private static int compareKeys(List<String> a, List<String> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int compared = Comparator.<String>nullsFirst(String.CASE_INSENSITIVE_ORDER).compare(a.get(i), b.get(i));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return 0;
+    }
+
+    private static class Query {
+        final List<String> dimensions;
+        final List<String> sums;
+        final int fromDay;
+        final int toDay;
+        final ContentOpener opener;
+
+        Query(List<String> dimensions, List<String> sums, int fromDay, int toDay, ContentOpener opener) {
+            this.dimensions = dimensions;
+            this.sums = sums;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.opener = opener;
+        }
+    }
+
+    /**
+     * One {@link SalesColumnarCache#open} call, run as a blocking operation of the fork-join pool.
+     */
+    private class ColumnBuild implements ForkJoinPool.ManagedBlocker {
+        private final SalesFileEntry entry;
+        private final Query query;
+        private SalesColumnarCache.Lookup lookup;
+        private IOException error;
+        private boolean done;
+
+        ColumnBuild(SalesFileEntry entry, Query query) {
+            this.entry = entry;
+            this.query = query;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                lookup = cache.open(entry.getFile(), target -> buildColumns(entry, target, query.opener));
+            } catch (IOException e) {
+                error = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+
+        SalesColumnarCache.Lookup result() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+            return lookup;
+        }
+    }
+
+    /**
+     * Splits the file list in halves until each task scans a single file.
+     */
+    private class FilesTask extends RecursiveTask<Partial> {
+        private final List<SalesFileEntry> files;
+        private final int from;
+        private final int to;
+        private final Query query;
+
+        FilesTask(List<SalesFileEntry> files, int from, int to, Query query) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.query = query;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from == 1) {
+                return scanFile(files.get(from), query);
+            }
+            int middle = (from + to) >>> 1;
+            FilesTask left = new FilesTask(files, from, middle, query);
+            left.fork();
+            Partial right = new FilesTask(files, middle, to, query).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Counts and sums a range of rows of one file, splitting ranges larger than {@link #ROWS_PER_TASK}.
+     */
+    private static class RowsTask extends RecursiveTask<Totals> {
+        private final SalesColumnFile columns;
+        private final SalesColumnFile.Column[] measures;
+        private final int from;
+        private final int to;
+        private final boolean filterDates;
+        private final Query query;
+
+        RowsTask(SalesColumnFile columns, SalesColumnFile.Column[] measures, int from, int to,
+                 boolean filterDates, Query query) {
+            this.columns = columns;
+            this.measures = measures;
+            this.from = from;
+            this.to = to;
+            this.filterDates = filterDates;
+            this.query = query;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                RowsTask left = new RowsTask(columns, measures, from, middle, filterDates, query);
+                left.fork();
+                Totals right = new RowsTask(columns, measures, middle, to, filterDates, query).compute();
+                return left.join().add(right);
+            }
+            Totals totals = new Totals(measures.length);
+            long[] sums = new long[measures.length];
+            for (int row = from; row < to; row++) {
+                if (filterDates) {
+                    int day = columns.dateAt(row);
+                    if (day < query.fromDay || day > query.toDay) {
+                        continue;
+                    }
+                }
+                totals.rows++;
+                for (int i = 0; i < measures.length; i++) {
+                    if (measures[i] == null) {
+                        continue;
+                    }
+                    long value = measures[i].valueAt(row);
+                    long sum = sums[i] + value;
+                    if (((sums[i] ^ sum) & (value ^ sum)) < 0) {
+                        // The long would overflow; move what we have into the BigDecimal total.
+                        totals.sums[i] = totals.sums[i].add(BigDecimal.valueOf(sums[i], measures[i].getScale()));
+                        sum = value;
+                    }
+                    sums[i] = sum;
+                }
+            }
+            for (int i = 0; i < measures.length; i++) {
+                if (measures[i] != null) {
+                    totals.sums[i] = totals.sums[i].add(BigDecimal.valueOf(sums[i], measures[i].getScale()));
+                }
+            }
+            return totals;
+        }
+    }
+
+    private static class Totals {
+        long rows;
+        final BigDecimal[] sums;
+
+        Totals(int measures) {
+            sums = new BigDecimal[measures];
+            Arrays.fill(sums, BigDecimal.ZERO);
+        }
+
+        Totals add(Totals other) {
+            rows += other.rows;
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = sums[i].add(other.sums[i]);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * What a subset of the files contributed to the result.
+     */
+    private static class Partial {
+        final Map<List<String>, Totals> groups = new HashMap<>();
+        final Map<String, String> failed = new TreeMap<>();
+        int scanned;
+        int indexed;
+
+        Partial merge(Partial other) {
+            other.groups.forEach((key, totals) -> groups.merge(key, totals, Totals::add));
+            failed.putAll(other.failed);
+            scanned += other.scanned;
+            indexed += other.indexed;
+            return this;
+        }
+    }
+}
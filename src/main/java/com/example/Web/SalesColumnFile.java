@@ -0,0 +1,309 @@
+package com.example.Web;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The columnar form of one sales CSV that aggregation queries scan instead of the CSV itself: each
+ * row's date as an epoch day, and every numeric column as fixed-point longs sharing one scale per
+ * column (so sums stay exact). Text columns are not kept. The file is memory-mapped and a query
+ * touches only the columns it sums, so a repeat scan costs no parsing and no Drive traffic.
+ * <pre>
+ * int magic, int version, int rows, int hasDates
+ * int[rows] dates (only if hasDates is 1)
+ * int columns, then per column: int nameLength, byte[nameLength] UTF-8 name, int scale, long[rows] values
+ * </pre>
+ */
+class SalesColumnFile {
+
+    private static final int MAGIC = 0x53434F4C; // "SCOL"
+    private static final int VERSION = 1;
+    private static final int SPILL_BUFFER_SIZE = 16 * 1024;
+
+    private final ByteBuffer data;
+    private final int rows;
+    private final int datesOffset;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+
+    private SalesColumnFile(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not a sales column file (or an older version)");
+        }
+        rows = data.getInt(8);
+        boolean hasDates = data.getInt(12) == 1;
+        datesOffset = hasDates ? 16 : -1;
+        int position = 16 + (hasDates ? rows * Integer.BYTES : 0);
+        int count = data.getInt(position);
+        position += Integer.BYTES;
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[data.getInt(position)];
+            data.get(position + Integer.BYTES, name);
+            position += Integer.BYTES + name.length;
+            int scale = data.getInt(position);
+            position += Integer.BYTES;
+            String column = new String(name, StandardCharsets.UTF_8);
+            columns.put(column.toLowerCase(Locale.ROOT), new Column(column, scale, position));
+            position += rows * Long.BYTES;
+        }
+    }
+
+    /**
+     * Maps a column file. The mapping stays readable after the file is deleted (e.g. evicted from the cache).
+     */
+    static SalesColumnFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Sales column file " + path + " is too large to map");
+            }
+            return new SalesColumnFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    boolean hasDates() {
+        return datesOffset >= 0;
+    }
+
+    /**
+     * The row's date as {@link LocalDate#toEpochDay() epoch day}; only valid if {@link #hasDates()}.
+     */
+    int dateAt(int row) {
+        return data.getInt(datesOffset + row * Integer.BYTES);
+    }
+
+    /**
+     * The numeric column with this name (case-insensitive), or null if the file has none.
+     */
+    Column column(String name) {
+        return columns.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    class Column {
+        private final String name;
+        private final int scale;
+        private final int offset;
+
+        private Column(String name, int scale, int offset) {
+            this.name = name;
+            this.scale = scale;
+            this.offset = offset;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Number of decimal places: a value v stands for v / 10^scale.
+         */
+        int getScale() {
+            return scale;
+        }
+
+        long valueAt(int row) {
+            return data.getLong(offset + row * Long.BYTES);
+        }
+    }
+
+    /**
+     * Builds a column file from the rows of a CSV as they are parsed. Numeric values are spilled to
+     * one temporary file per column while parsing and rescaled to their column's largest scale when
+     * the column file is written, so memory use does not depend on the number of rows.
+     * A column stops being recorded at its first value that is not a number, or that does not fit a
+     * long; empty values count as zero.
+     */
+    static class Writer implements SalesCsvInputStream.RowListener, Closeable {
+
+        private final Path workDirectory;
+        private final String prefix;
+        private final List<String> names = new ArrayList<>();
+        private final List<Spill> spills = new ArrayList<>();
+        private Spill dates;
+        private int rows;
+
+        /**
+         * @param prefix Name prefix of the spill files created in {@code workDirectory}.
+         */
+        Writer(Path workDirectory, String prefix) {
+            this.workDirectory = workDirectory;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public void header(List<String> columns, int dateColumn) throws IOException {
+            if (dateColumn >= 0) {
+                dates = new Spill(workDirectory.resolve(prefix + ".dates.spill"));
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                names.add(columns.get(i));
+                spills.add(i == dateColumn ? null : new Spill(workDirectory.resolve(prefix + "." + i + ".spill")));
+            }
+        }
+
+        @Override
+        public void row(List<String> values, LocalDate date) throws IOException {
+            if (rows == Integer.MAX_VALUE) {
+                throw new IOException("Too many rows for a sales column file");
+            }
+            rows++;
+            if (dates != null) {
+                dates.out.writeInt((int) date.toEpochDay());
+            }
+            for (int i = 0; i < spills.size(); i++) {
+                Spill spill = spills.get(i);
+                if (spill != null && !spill.add(values.get(i).trim())) {
+                    spill.delete(); // Not numeric; record no further values of it.
+                    spills.set(i, null);
+                }
+            }
+        }
+
+        /**
+         * Writes the column file; the CSV must have been read to the end.
+         */
+        void writeTo(Path target) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(rows);
+                out.writeInt(dates != null ? 1 : 0);
+                if (dates != null) {
+                    try (DataInputStream in = dates.reopen()) {
+                        for (int row = 0; row < rows; row++) {
+                            out.writeInt(in.readInt());
+                        }
+                    }
+                }
+                List<Integer> numeric = new ArrayList<>();
+                for (int i = 0; i < spills.size(); i++) {
+                    if (spills.get(i) != null && spills.get(i).fitsScale()) {
+                        numeric.add(i);
+                    }
+                }
+                out.writeInt(numeric.size());
+                for (int i : numeric) {
+                    byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(name.length);
+                    out.write(name);
+                    Spill spill = spills.get(i);
+                    out.writeInt(spill.maxScale);
+                    try (DataInputStream in = spill.reopen()) {
+                        for (int row = 0; row < rows; row++) {
+                            long unscaled = in.readLong();
+                            int scale = in.readByte();
+                            out.writeLong(unscaled * Spill.POWERS_OF_TEN[spill.maxScale - scale]);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Deletes the spill files.
+         */
+        @Override
+        public void close() throws IOException {
+            if (dates != null) {
+                dates.delete();
+            }
+            for (Spill spill : spills) {
+                if (spill != null) {
+                    spill.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * The values of one column as (unscaled long, scale) pairs, in row order.
+     */
+    private static class Spill {
+
+        static final long[] POWERS_OF_TEN = new long[19];
+
+        static {
+            POWERS_OF_TEN[0] = 1;
+            for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+                POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            }
+        }
+
+        final Path path;
+        final DataOutputStream out;
+        int maxScale;
+        long maxMagnitude; // Largest |unscaled| seen, to check the values still fit a long at maxScale
+
+        Spill(Path path) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), SPILL_BUFFER_SIZE));
+        }
+
+        /**
+         * Adds a value; returns false if it is not a number that fits a long.
+         */
+        boolean add(String value) throws IOException {
+            long unscaled = 0;
+            int scale = 0;
+            if (!value.isEmpty()) {
+                BigDecimal number;
+                try {
+                    number = new BigDecimal(value);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                if (number.scale() < 0) {
+                    number = number.setScale(0);
+                }
+                if (number.scale() >= POWERS_OF_TEN.length || number.unscaledValue().bitLength() > 62) {
+                    return false;
+                }
+                unscaled = number.unscaledValue().longValue();
+                scale = number.scale();
+            }
+            maxScale = Math.max(maxScale, scale);
+            maxMagnitude = Math.max(maxMagnitude, Math.abs(unscaled));
+            out.writeLong(unscaled);
+            out.writeByte(scale);
+            return true;
+        }
+
+        /**
+         * Whether every value still fits a long once rescaled to the column's largest scale
+         * (checked conservatively, from the largest unscaled value).
+         */
+        boolean fitsScale() {
+            return maxMagnitude <= Long.MAX_VALUE / POWERS_OF_TEN[maxScale];
+        }
+
+        DataInputStream reopen() throws IOException {
+            out.close();
+            return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), SPILL_BUFFER_SIZE));
+        }
+
+        void delete() throws IOException {
+            out.close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.Web;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the parsed, columnar form ({@link SalesColumnFile}) of sales CSVs on local disk, so
+ * aggregation queries only download and parse files that are new or changed since they were last
+ * scanned.
+ *
+ * Entries are keyed by file ID plus the file's Drive {@code modifiedTime}: a file changed in Drive
+ * misses and its old columns are dropped. The total size is bounded and the least recently used files
+ * are evicted first. Concurrent misses on the same version share one build, and the index is rebuilt
+ * from the cache directory on startup. The store itself is an {@link LruDiskCache}.
+ */
+@Component
+public class SalesColumnarCache {
+
+    /**
+     * Writes the columns of a file that missed the cache to {@code target}, e.g. by downloading and
+     * parsing its CSV. {@code target} is in the cache directory, so spill files can go next to it.
+     */
+    @FunctionalInterface
+    public interface ColumnBuilder {
+        void build(Path target) throws IOException;
+    }
+
+    private static final String COLUMNS_SUFFIX = ".columns";
+
+    private final LruDiskCache disk;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+
+    public SalesColumnarCache(
+            @Value("${google.drive.aggregation.cache.directory:${java.io.tmpdir}/drive-sales-columns}") String directory,
+            @Value("${google.drive.aggregation.cache.max-size:4GB}") DataSize maxSize) {
+        this.disk = new LruDiskCache(Paths.get(directory), COLUMNS_SUFFIX, maxSize.toBytes(), "cached columns");
+    }
+
+    /**
+     * Rebuilds the index from files left by a previous run; unfinished builds and spill files are discarded.
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        disk.load();
+    }
+
+    /**
+     * Opens the cached columns of the file, building them first on a miss. Files without a
+     * {@code modifiedTime} cannot be versioned, so they are built every time and not kept.
+     *
+     * @return The columns, and whether they had to be built.
+     */
+    public Lookup open(DriveFileMetadata file, ColumnBuilder builder) throws IOException {
+        if (file.getModifiedTime() == null) {
+            builds.incrementAndGet();
+            Path partial = disk.partialPath(file.getId() + ".unversioned");
+            try {
+                builder.build(partial);
+                return new Lookup(SalesColumnFile.open(partial), true);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+        Lookup cached = openIfCached(file);
+        if (cached != null) {
+            return cached;
+        }
+
+        String key = key(file);
+        boolean built = disk.fill(key, builder::build);
+        if (built) {
+            builds.incrementAndGet();
+        }
+        SalesColumnFile columns = disk.openIfPresent(key, SalesColumnFile::open);
+        if (columns == null) {
+            throw new NoSuchFileException(disk.entryPath(key).toString(), null, "evicted before it could be scanned");
+        }
+        return new Lookup(columns, built);
+    }
+
+    /**
+     * Opens the cached columns of the file if they are current, without building them on a miss.
+     *
+     * @return The columns, or null on a miss or for a file without a {@code modifiedTime}.
+     */
+    public Lookup openIfCached(DriveFileMetadata file) throws IOException {
+        if (file.getModifiedTime() == null) {
+            return null;
+        }
+        SalesColumnFile cached = disk.openIfPresent(key(file), SalesColumnFile::open);
+        if (cached == null) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return new Lookup(cached, false);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("builds", builds.get());
+        disk.addStats(stats);
+        return stats;
+    }
+
+    private static String key(DriveFileMetadata file) {
+        return file.getId() + "." + file.getModifiedTime();
+    }
+
+    /**
+     * The columns of one file, and whether this lookup built them.
+     */
+    public static class Lookup {
+        private final SalesColumnFile columns;
+        private final boolean built;
+
+        private Lookup(SalesColumnFile columns, boolean built) {
+            this.columns = columns;
+            this.built = built;
+        }
+
+        SalesColumnFile getColumns() {
+            return columns;
+        }
+
+        public boolean isBuilt() {
+            return built;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.Web;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Parses a sales CSV (RFC 4180: comma separated, optional double quotes, CRLF or LF) from the bytes
+ * passing through it, so validation and statistics cost no extra read of the file. Memory use is
+ * one row, independent of the file size.
+ * <p>
+ * The first fatal problem (missing required column, ragged row, bad or out-of-range date, an
+ * unterminated quote) is thrown as a {@link SalesCsvValidationException} from {@code read}, which
+ * aborts whatever upload is consuming the stream. Checks that need the whole file run when the end
+ * of the stream is read, i.e. before the last chunk is sent to Drive.
+ * <p>
+ * Each valid row is passed to a {@link RowListener}, e.g. {@link SalesCsvStats}.
+ */
+class SalesCsvInputStream extends FilterInputStream {
+
+    /**
+     * Receives the header and then every row of the file as it is parsed.
+     */
+    interface RowListener {
+        /**
+         * @param dateColumn Index of the date column, or -1 if the file has none.
+         */
+        void header(List<String> columns, int dateColumn) throws IOException;
+
+        /**
+         * @param date The row's date, or null if the file has no date column.
+         */
+        void row(List<String> values, LocalDate date) throws IOException;
+    }
+
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final List<String> requiredColumns;
+    private final String dateColumn;
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final int maxFieldBytes;
+    private final RowListener listener;
+
+    // Parser state
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private boolean inQuotes;
+    private boolean quoteInQuotes; // Saw a quote inside a quoted field: either an escaped quote or the closing one
+    private boolean afterCr;
+    private final List<String> row = new ArrayList<>();
+    private long line = 1;
+    private long rowLine = 1;
+
+    private List<String> header;
+    private int dateIndex = -1;
+    private boolean finished;
+
+    SalesCsvInputStream(InputStream in, List<String> requiredColumns, String dateColumn,
+                        LocalDate fromDate, LocalDate toDate, int maxFieldBytes, RowListener listener) {
+        super(in);
+        this.requiredColumns = requiredColumns;
+        this.dateColumn = dateColumn;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.maxFieldBytes = maxFieldBytes;
+        this.listener = listener;
+    }
+
+    /**
+     * Whether the stream has been read to the end, i.e. the listener has seen the whole file.
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            parse(buffer, offset, read);
+        } else if (read == -1 && !finished) {
+            finish();
+        }
+        return read;
+    }
+
+    /**
+     * Skipped bytes are read and parsed too, so nothing escapes validation.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void parse(byte[] buffer, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            byte b = buffer[i];
+            if (afterCr) {
+                afterCr = false;
+                if (b == LF) {
+                    continue; // The LF of a CRLF already handled at the CR
+                }
+            }
+            if (inQuotes) {
+                if (quoteInQuotes) {
+                    quoteInQuotes = false;
+                    if (b == QUOTE) {
+                        append(b); // "" is an escaped quote
+                        continue;
+                    }
+                    inQuotes = false; // The quote closed the field; handle b as unquoted below
+                } else {
+                    if (b == QUOTE) {
+                        quoteInQuotes = true;
+                    } else {
+                        if (b == LF) {
+                            line++;
+                        }
+                        append(b);
+                    }
+                    continue;
+                }
+            }
+            switch (b) {
+                case QUOTE:
+                    if (fieldLength > 0) {
+                        throw new SalesCsvValidationException(line, "unexpected quote inside an unquoted field");
+                    }
+                    inQuotes = true;
+                    break;
+                case COMMA:
+                    endField();
+                    break;
+                case CR:
+                    afterCr = true;
+                    endRow();
+                    break;
+                case LF:
+                    endRow();
+                    break;
+                default:
+                    append(b);
+            }
+        }
+    }
+
+    private void finish() throws IOException {
+        if (inQuotes && !quoteInQuotes) {
+            throw new SalesCsvValidationException(rowLine, "unterminated quoted field");
+        }
+        inQuotes = false;
+        if (fieldLength > 0 || !row.isEmpty()) {
+            endRow();
+        }
+        if (header == null) {
+            throw new SalesCsvValidationException(0, "file is empty; expected a header row");
+        }
+        finished = true;
+    }
+
+    private void append(byte b) throws SalesCsvValidationException {
+        if (fieldLength == field.length) {
+            if (fieldLength >= maxFieldBytes) {
+                throw new SalesCsvValidationException(rowLine, "field longer than " + maxFieldBytes + " bytes");
+            }
+            field = Arrays.copyOf(field, Math.min(field.length * 2, maxFieldBytes));
+        }
+        field[fieldLength++] = b;
+    }
+
+    private void endField() {
+        row.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+        fieldLength = 0;
+    }
+
+    private void endRow() throws IOException {
+        endField();
+        if (row.size() == 1 && row.get(0).isEmpty()) {
+            row.clear(); // Blank line
+        } else {
+            if (header == null) {
+                readHeader(row);
+            } else {
+                readRow(row);
+            }
+            row.clear();
+        }
+        line++;
+        rowLine = line;
+    }
+
+    private void readHeader(List<String> names) throws IOException {
+        List<String> columns = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String name : names) {
+            String column = name.replace("\uFEFF", "").trim(); // Drop a UTF-8 byte order mark
+            if (column.isEmpty()) {
+                throw new SalesCsvValidationException(rowLine, "header has an empty column name");
+            }
+            if (!seen.add(column.toLowerCase(Locale.ROOT))) {
+                throw new SalesCsvValidationException(rowLine, "header has duplicate column '" + column + "'");
+            }
+            columns.add(column);
+        }
+        List<String> missing = new ArrayList<>();
+        for (String required : requiredColumns) {
+            if (!seen.contains(required.toLowerCase(Locale.ROOT))) {
+                missing.add(required);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new SalesCsvValidationException(rowLine, "header is missing required columns " + missing);
+        }
+        for (int i = 0; i < columns.size() && dateColumn != null; i++) {
+            if (columns.get(i).equalsIgnoreCase(dateColumn)) {
+                dateIndex = i;
+            }
+        }
+        header = columns;
+        listener.header(columns, dateIndex);
+    }
+
+    private void readRow(List<String> values) throws IOException {
+        if (values.size() != header.size()) {
+            throw new SalesCsvValidationException(rowLine,
+                    "expected " + header.size() + " fields but found " + values.size());
+        }
+        LocalDate date = null;
+        if (dateIndex >= 0) {
+            String value = values.get(dateIndex).trim();
+            try {
+                date = LocalDate.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new SalesCsvValidationException(rowLine,
+                        "'" + header.get(dateIndex) + "' value '" + value + "' is not a YYYY-MM-DD date");
+            }
+            if (date.isBefore(fromDate) || date.isAfter(toDate)) {
+                throw new SalesCsvValidationException(rowLine,
+                        "date " + date + " is outside the file's range " + fromDate + " to " + toDate);
+            }
+        }
+        listener.row(values, date);
+    }
+}
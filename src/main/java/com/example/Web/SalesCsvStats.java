@@ -0,0 +1,146 @@
+package com.example.Web;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row count, date span and per-column sum/min/max of a sales CSV, accumulated row by row while the
+ * file streams to Drive. A column counts as numeric while every non-empty value in it parses as a
+ * number; the first value that does not drops the column from the statistics.
+ */
+public class SalesCsvStats implements SalesCsvInputStream.RowListener {
+
+    // Drive limits appProperties to 124 bytes per key plus value.
+    private static final int MAX_PROPERTY_BYTES = 124;
+    /** appProperties Drive allows per file. */
+    public static final int MAX_APP_PROPERTIES = 30;
+
+    private List<String> columns;
+    private ColumnStats[] columnStats;
+    private long rows;
+    private LocalDate firstDate;
+    private LocalDate lastDate;
+
+    @Override
+    public void header(List<String> columns, int dateColumn) {
+        this.columns = columns;
+        this.columnStats = new ColumnStats[columns.size()];
+        for (int i = 0; i < columnStats.length; i++) {
+            columnStats[i] = i == dateColumn ? null : new ColumnStats();
+        }
+    }
+
+    @Override
+    public void row(List<String> values, LocalDate date) {
+        rows++;
+        if (date != null) {
+            firstDate = firstDate == null || date.isBefore(firstDate) ? date : firstDate;
+            lastDate = lastDate == null || date.isAfter(lastDate) ? date : lastDate;
+        }
+        for (int i = 0; i < columnStats.length; i++) {
+            ColumnStats column = columnStats[i];
+            if (column != null && !column.add(values.get(i).trim())) {
+                columnStats[i] = null; // Not numeric; parse no further values of it.
+            }
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    /**
+     * Sum of the column, or null if it is not numeric or has no values.
+     */
+    public BigDecimal getSum(String column) {
+        ColumnStats stats = numericColumn(column);
+        return stats != null ? stats.sum : null;
+    }
+
+    public BigDecimal getMin(String column) {
+        ColumnStats stats = numericColumn(column);
+        return stats != null ? stats.min : null;
+    }
+
+    public BigDecimal getMax(String column) {
+        ColumnStats stats = numericColumn(column);
+        return stats != null ? stats.max : null;
+    }
+
+    /**
+     * The statistics as Drive appProperties: {@code rows}, {@code dateFrom}/{@code dateTo}, and
+     * {@code sum.<column>}, {@code min.<column>}, {@code max.<column>} for the first
+     * {@code maxColumns} numeric columns, leaving out columns that would make more than
+     * {@code maxProperties} in all.
+     */
+    public Map<String, String> toAppProperties(int maxColumns, int maxProperties) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("rows", String.valueOf(rows));
+        if (firstDate != null) {
+            properties.put("dateFrom", firstDate.toString());
+            properties.put("dateTo", lastDate.toString());
+        }
+        int added = 0;
+        for (int i = 0; i < columnStats.length && added < maxColumns && properties.size() + 3 <= maxProperties; i++) {
+            ColumnStats stats = columnStats[i];
+            if (stats == null || stats.sum == null) {
+                continue;
+            }
+            String key = columns.get(i).replaceAll("[^A-Za-z0-9_-]", "_");
+            putIfFits(properties, "sum." + key, stats.sum);
+            putIfFits(properties, "min." + key, stats.min);
+            putIfFits(properties, "max." + key, stats.max);
+            added++;
+        }
+        return properties;
+    }
+
+    private ColumnStats numericColumn(String column) {
+        int index = columns.indexOf(column);
+        return index >= 0 ? columnStats[index] : null;
+    }
+
+    private static void putIfFits(Map<String, String> properties, String key, BigDecimal value) {
+        String text = value.stripTrailingZeros().toPlainString();
+        if ((key + text).getBytes(StandardCharsets.UTF_8).length <= MAX_PROPERTY_BYTES) {
+            properties.put(key, text);
+        }
+    }
+
+    private static class ColumnStats {
+        BigDecimal sum;
+        BigDecimal min;
+        BigDecimal max;
+
+        /**
+         * Adds a value; returns false if it is not a number.
+         */
+        boolean add(String value) {
+            if (value.isEmpty()) {
+                return true;
+            }
+            BigDecimal number;
+            try {
+                number = new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            sum = sum == null ? number : sum.add(number);
+            min = min == null || number.compareTo(min) < 0 ? number : min;
+            max = max == null || number.compareTo(max) > 0 ? number : max;
+            return true;
+        }
+    }
+}
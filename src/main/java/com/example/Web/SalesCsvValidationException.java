@@ -0,0 +1,25 @@
+package com.example.Web;
+
+import java.io.IOException;
+
+/**
+ * Thrown while a sales CSV is being uploaded when its content breaks the expected schema or date
+ * range. It is raised from the upload's input stream, so the Drive transfer is aborted before the
+ * file is finalized. Callers should answer with 422 rather than a server error.
+ */
+public class SalesCsvValidationException extends IOException {
+
+    private final long line;
+
+    public SalesCsvValidationException(long line, String message) {
+        super(line > 0 ? "Line " + line + ": " + message : message);
+        this.line = line;
+    }
+
+    /**
+     * The 1-based line the problem was found on, or 0 if it concerns the file as a whole.
+     */
+    public long getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.Web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates sales CSVs and computes their statistics as they are uploaded, instead of letting a
+ * malformed file reach Drive and fail later in reporting. See {@link SalesCsvInputStream} for what
+ * is checked; the header must contain {@code google.drive.upload.validation.required-columns}, and
+ * every value of the {@code date-column} must fall within the upload's fromDate/toDate.
+ */
+@Component
+public class SalesCsvValidator {
+
+    private final boolean enabled;
+    private final List<String> requiredColumns;
+    private final String dateColumn;
+    private final int maxFieldBytes;
+    private final int maxStatsColumns;
+
+    public SalesCsvValidator(
+            @Value("${google.drive.upload.validation.enabled:true}") boolean enabled,
+            @Value("${google.drive.upload.validation.required-columns:date}") List<String> requiredColumns,
+            @Value("${google.drive.upload.validation.date-column:date}") String dateColumn,
+            @Value("${google.drive.upload.validation.max-field-size:64KB}") DataSize maxFieldSize,
+            @Value("${google.drive.upload.validation.max-stats-columns:9}") int maxStatsColumns) {
+        this.enabled = enabled;
+        this.requiredColumns = requiredColumns;
+        this.dateColumn = dateColumn.isBlank() ? null : dateColumn;
+        this.maxFieldBytes = (int) maxFieldSize.toBytes();
+        this.maxStatsColumns = maxStatsColumns;
+    }
+
+    /**
+     * Starts validating one upload.
+     *
+     * @throws SalesCsvValidationException if fromDate/toDate are not a valid date range.
+     */
+    public Stage stage(String fromDate, String toDate) throws SalesCsvValidationException {
+        if (!enabled) {
+            return new Stage(null, null);
+        }
+        LocalDate from = parseDate("fromDate", fromDate);
+        LocalDate to = parseDate("toDate", toDate);
+        if (from.isAfter(to)) {
+            throw new SalesCsvValidationException(0, "fromDate " + from + " is after toDate " + to);
+        }
+        return new Stage(from, to);
+    }
+
+    /**
+     * Parses a stored sales file with the same checks its upload went through (whether or not upload
+     * validation is enabled), passing each row to {@code listener} as the returned stream is read.
+     *
+     * @throws SalesCsvValidationException if fromDate/toDate are not a valid date range.
+     */
+    InputStream parse(InputStream content, String fromDate, String toDate, SalesCsvInputStream.RowListener listener)
+            throws SalesCsvValidationException {
+        return new SalesCsvInputStream(content, requiredColumns, dateColumn, parseDate("fromDate", fromDate),
+                parseDate("toDate", toDate), maxFieldBytes, listener);
+    }
+
+    private static LocalDate parseDate(String name, String value) throws SalesCsvValidationException {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new SalesCsvValidationException(0, name + " '" + value + "' is not a YYYY-MM-DD date");
+        }
+    }
+
+    /**
+     * The validation of one upload. Each attempt to send the file wraps a fresh content stream;
+     * the statistics are those of the last stream read to the end.
+     */
+    public class Stage {
+
+        private final LocalDate fromDate;
+        private final LocalDate toDate;
+        private SalesCsvInputStream last;
+        private SalesCsvStats lastStats;
+
+        private Stage(LocalDate fromDate, LocalDate toDate) {
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+
+        /**
+         * Returns {@code content} wrapped so it is parsed and validated as it is read.
+         */
+        public InputStream wrap(InputStream content) {
+            if (!enabled) {
+                return content;
+            }
+            lastStats = new SalesCsvStats();
+            last = new SalesCsvInputStream(content, requiredColumns, dateColumn, fromDate, toDate, maxFieldBytes, lastStats);
+            return last;
+        }
+
+        /**
+         * A new stage for the same date range, e.g. to validate a file again from its first byte.
+         */
+        public Stage restart() {
+            return new Stage(fromDate, toDate);
+        }
+
+        /**
+         * Statistics of the file, or null if validation is off or the content was not read to the end.
+         */
+        public SalesCsvStats getStats() {
+            return last != null && last.isFinished() ? lastStats : null;
+        }
+
+        /**
+         * {@link #getStats()} as Drive appProperties, or null.
+         *
+         * @param reservedProperties appProperties the file carries besides its statistics (e.g. the codec).
+         */
+        public Map<String, String> getAppProperties(int reservedProperties) {
+            SalesCsvStats stats = getStats();
+            return stats != null
+                    ? stats.toAppProperties(maxStatsColumns, SalesCsvStats.MAX_APP_PROPERTIES - reservedProperties)
+                    : null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A sales file found by search, with the month/market/country taken from its folder path and the
+ * brand and date range taken from its name.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesFileEntry {
+    private DriveFileMetadata file; // The Drive file itself
+    private String month; // Month folder name (e.g., "January")
+    private String market; // Market folder name (e.g., "Amazon")
+    private String country; // Country folder name (e.g., "US")
+    private String brand; // Brand from the file name (e.g., "Bryco")
+    private String fromDate; // Start date from the file name (YYYY-MM-DD)
+    private String toDate; // End date from the file name (YYYY-MM-DD)
+}
@@ -0,0 +1,41 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code brand-fromDate_toDate.csv} naming scheme given to uploaded sales files
+ * ({@code .csv.gz} when they are stored compressed).
+ */
+@Data
+@AllArgsConstructor
+public class SalesFileName {
+
+    // Dates are YYYY-MM-DD, so the brand is everything before the last "-date_date" suffix.
+    private static final Pattern PATTERN = Pattern.compile("^(.+)-(\\d{4}-\\d{2}-\\d{2})_(\\d{4}-\\d{2}-\\d{2})\\.csv(?:\\.gz)?$");
+
+    private String brand; // Brand (e.g., "Bryco")
+    private String fromDate; // Start date (YYYY-MM-DD)
+    private String toDate; // End date (YYYY-MM-DD)
+
+    public static String format(String brand, String fromDate, String toDate) {
+        return String.format("%s-%s_%s.csv", brand, fromDate, toDate);
+    }
+
+    /**
+     * Parses a Drive file name, returning null if it does not follow the sales file naming scheme.
+     */
+    public static SalesFileName parse(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        Matcher matcher = PATTERN.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new SalesFileName(matcher.group(1), matcher.group(2), matcher.group(3));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * One file of a batch upload together with the month/market/country/brand/date tuple that
+ * decides its target folder and name in Drive.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesUploadRequest {
+    private MultipartFile file; // The CSV file to upload
+    private String month; // Month number (e.g., "01" for January)
+    private String market; // Market (e.g., "Amazon")
+    private String country; // Country (e.g., "US")
+    private String brand; // Brand (e.g., "Bryco")
+    private String fromDate; // Start date (YYYY-MM-DD)
+    private String toDate; // End date (YYYY-MM-DD)
+}
@@ -0,0 +1,39 @@
+package com.example.Web;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An upload accepted into the staging queue. The same record is journaled next to the staged file
+ * and returned by the job status endpoint.
+ */
+@Data
+@NoArgsConstructor
+public class UploadJob {
+
+    public enum State {
+        QUEUED, // Staged on local disk, waiting for a worker (or for its next retry)
+        UPLOADING, // A worker is sending it to Drive
+        DONE, // Uploaded; fileId is set
+        FAILED // Gave up; error says why
+    }
+
+    private String jobId; // ID returned to the client
+    private State state; // Where the job is
+    private String originalFileName; // Name of the file as sent by the client
+    private String contentType; // Content type as sent by the client
+    private long size; // Size of the staged file in bytes
+    private String month; // Month number (e.g., "01" for January)
+    private String market; // Market (e.g., "Amazon")
+    private String country; // Country (e.g., "US")
+    private String brand; // Brand (e.g., "Bryco")
+    private String fromDate; // Start date (YYYY-MM-DD)
+    private String toDate; // End date (YYYY-MM-DD)
+    private int attempts; // Upload attempts made so far
+    private String fileId; // Google Drive file ID, once DONE
+    private boolean deduplicated; // True if an identical file already existed and was used instead
+    private String error; // Last failure, if any
+    private long createdAt; // When the job was accepted (Unix epoch milliseconds)
+    private long updatedAt; // When the job last changed state (Unix epoch milliseconds)
+    private Long nextAttemptAt; // When a QUEUED job that failed before will be retried (Unix epoch milliseconds)
+}
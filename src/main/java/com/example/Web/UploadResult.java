@@ -0,0 +1,17 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of uploading one sales file.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadResult {
+    private String fileId; // Google Drive file ID of the stored file
+    private boolean deduplicated; // True if an identical file already existed and was returned instead
+    private boolean replaced; // True if an existing file of the same name had its content replaced in place
+}
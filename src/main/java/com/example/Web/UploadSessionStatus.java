@@ -0,0 +1,20 @@
+package com.example.Web;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of a resumable upload session, returned so clients know where to resume from.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionStatus {
+    private String sessionId; // Our ID for the Drive resumable session
+    private String fileName; // Name the file will have in Drive
+    private long committedBytes; // Bytes Drive has persisted so far
+    private long totalBytes; // Total upload size, or -1 if it was streamed without a known length
+    private boolean complete; // True once Drive has created the file
+    private String fileId; // Google Drive file ID, once complete
+}
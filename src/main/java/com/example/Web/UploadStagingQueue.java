@@ -0,0 +1,501 @@
+package com.example.Web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind queue for uploads that should not hold the HTTP request open for the Drive transfer.
+ *
+ * A submitted file is copied into the staging directory and its job record journaled next to it
+ * (both flushed to disk) before the job ID is returned. Background workers then upload it through
+ * {@link GoogleDriveService}, retrying transient failures with exponential backoff and journaling
+ * every state change. On startup, jobs that were queued or uploading when the service stopped are
+ * picked up again; a job interrupted after Drive stored the file is caught by upload deduplication.
+ */
+@Component
+public class UploadStagingQueue {
+
+    private static final String JOB_SUFFIX = ".json";
+    private static final String CONTENT_SUFFIX = ".csv";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final GoogleDriveService googleDriveService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final int workers;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxPendingJobs;
+    private final long retentionMillis;
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    // Jobs not yet DONE or FAILED. A slot is reserved before a file is staged, so concurrent submits cannot overshoot.
+    private final AtomicInteger pending = new AtomicInteger();
+    private ScheduledExecutorService executor;
+
+    public UploadStagingQueue(
+            GoogleDriveService googleDriveService,
+            ObjectMapper objectMapper,
+            DriveMetrics metrics,
+            @Value("${google.drive.upload.staging.enabled:true}") boolean enabled,
+            @Value("${google.drive.upload.staging.directory:${java.io.tmpdir}/drive-upload-staging}") String directory,
+            @Value("${google.drive.upload.staging.workers:2}") int workers,
+            @Value("${google.drive.upload.staging.max-attempts:10}") int maxAttempts,
+            @Value("${google.drive.upload.staging.initial-backoff:10s}") Duration initialBackoff,
+            @Value("${google.drive.upload.staging.max-backoff:10m}") Duration maxBackoff,
+            @Value("${google.drive.upload.staging.max-pending-jobs:1000}") int maxPendingJobs,
+            @Value("${google.drive.upload.staging.retention:24h}") Duration retention) {
+        this.googleDriveService = googleDriveService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.maxPendingJobs = maxPendingJobs;
+        this.retentionMillis = retention.toMillis();
+
+        metrics.gauge("drive.upload.staging.pending", "Staged uploads not yet in Drive", pending, AtomicInteger::get);
+    }
+
+    /**
+     * Starts the workers and re-queues the jobs left unfinished by a previous run.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "drive-upload-staging-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        recover();
+        long purgeInterval = Math.min(retentionMillis, PURGE_INTERVAL_MILLIS);
+        executor.scheduleWithFixedDelay(this::purgeFinished, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the workers. Uploads cut off here stay journaled as in progress and run again on the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stages a file for upload and returns as soon as it is safely on local disk. A file staged while
+     * the service is stopping is still accepted; it is uploaded after the restart.
+     *
+     * @return The queued job.
+     * @throws DriveRateLimitException if {@code max-pending-jobs} uploads are already waiting.
+     */
+    public UploadJob submit(MultipartFile file, String month, String market, String country, String brand,
+                            String fromDate, String toDate) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Upload staging is disabled");
+        }
+        GoogleDriveService.checkCsv(file);
+        googleDriveService.checkUploadParameters(month, fromDate, toDate);
+        if (pending.incrementAndGet() > maxPendingJobs) {
+            pending.decrementAndGet();
+            throw new DriveRateLimitException("Upload staging queue is full (" + maxPendingJobs + " jobs)",
+                    Math.max(1, initialBackoffMillis / 1000), null);
+        }
+
+        UploadJob job = new UploadJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setState(UploadJob.State.QUEUED);
+        job.setOriginalFileName(file.getOriginalFilename());
+        job.setContentType(file.getContentType());
+        job.setMonth(month);
+        job.setMarket(market);
+        job.setCountry(country);
+        job.setBrand(brand);
+        job.setFromDate(fromDate);
+        job.setToDate(toDate);
+        job.setCreatedAt(System.currentTimeMillis());
+        job.setUpdatedAt(job.getCreatedAt());
+
+        // Content first: a content file without a job record is an unacknowledged upload and is discarded on recovery.
+        Path staged = contentPath(job.getJobId());
+        Path partial = directory.resolve(job.getJobId() + CONTENT_SUFFIX + TEMP_SUFFIX);
+        try (InputStream in = file.getInputStream()) {
+            job.setSize(Files.copy(in, partial));
+            force(partial);
+            Files.move(partial, staged, StandardCopyOption.ATOMIC_MOVE);
+            journal(job);
+        } catch (IOException | RuntimeException e) {
+            pending.decrementAndGet();
+            Files.deleteIfExists(partial);
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+
+        jobs.put(job.getJobId(), job);
+        schedule(job, 0);
+        return snapshot(job);
+    }
+
+    /**
+     * Returns the current state of a job, or null if it is unknown (or was purged after {@code retention}).
+     */
+    public UploadJob getJob(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        return job != null ? snapshot(job) : null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<UploadJob.State, Long> byState = new EnumMap<>(UploadJob.State.class);
+        for (UploadJob.State state : UploadJob.State.values()) {
+            byState.put(state, 0L);
+        }
+        long stagedBytes = 0;
+        for (UploadJob job : jobs.values()) {
+            synchronized (job) {
+                byState.merge(job.getState(), 1L, Long::sum);
+                if (!isFinished(job)) {
+                    stagedBytes += job.getSize();
+                }
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        byState.forEach((state, count) -> stats.put(state.name().toLowerCase(), count));
+        stats.put("stagedBytes", stagedBytes);
+        return stats;
+    }
+
+    private void run(UploadJob job) {
+        synchronized (job) {
+            job.setState(UploadJob.State.UPLOADING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setNextAttemptAt(null);
+            job.setUpdatedAt(System.currentTimeMillis());
+        }
+        journalQuietly(job);
+
+        UploadResult result;
+        try {
+            result = googleDriveService.uploadSalesDataFile(new StagedFile(contentPath(job.getJobId()), job),
+                    job.getMonth(), job.getMarket(), job.getCountry(), job.getBrand(), job.getFromDate(), job.getToDate());
+        } catch (Exception e) {
+            if (executor.isShutdown()) {
+                return; // Journaled as UPLOADING; recovered on the next start.
+            }
+            long delay = backoff(job.getAttempts());
+            boolean retry = isRetryable(e) && job.getAttempts() < maxAttempts;
+            synchronized (job) {
+                if (!retry) {
+                    pending.decrementAndGet();
+                }
+                job.setState(retry ? UploadJob.State.QUEUED : UploadJob.State.FAILED);
+                job.setError(e.getMessage());
+                job.setNextAttemptAt(retry ? System.currentTimeMillis() + delay : null);
+                job.setUpdatedAt(System.currentTimeMillis());
+            }
+            journalQuietly(job);
+            if (retry) {
+                System.err.println("Staged upload " + job.getJobId() + " failed (attempt " + job.getAttempts()
+                        + "), retrying in " + delay + " ms: " + e.getMessage());
+                schedule(job, delay);
+            } else {
+                System.err.println("Staged upload " + job.getJobId() + " failed permanently: " + e.getMessage());
+                deleteQuietly(contentPath(job.getJobId()));
+            }
+            return;
+        }
+
+        synchronized (job) {
+            pending.decrementAndGet();
+            job.setState(UploadJob.State.DONE);
+            job.setFileId(result.getFileId());
+            job.setDeduplicated(result.isDeduplicated());
+            job.setError(null);
+            job.setUpdatedAt(System.currentTimeMillis());
+        }
+        journalQuietly(job);
+        deleteQuietly(contentPath(job.getJobId()));
+    }
+
+    /**
+     * Loads every journaled job. Unfinished ones are queued again right away, since a restart is a
+     * good moment to retry; leftovers of interrupted staging are deleted.
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.collect(Collectors.toList());
+        }
+        List<UploadJob> unfinished = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (!name.endsWith(JOB_SUFFIX)) {
+                continue;
+            }
+            UploadJob job;
+            try {
+                job = objectMapper.readValue(file.toFile(), UploadJob.class);
+            } catch (IOException e) {
+                System.err.println("Skipping unreadable upload job record " + file + ": " + e.getMessage());
+                continue;
+            }
+            jobs.put(job.getJobId(), job);
+            if (isFinished(job)) {
+                continue;
+            }
+            if (!Files.exists(contentPath(job.getJobId()))) {
+                job.setState(UploadJob.State.FAILED);
+                job.setError("Staged file is missing");
+                job.setUpdatedAt(System.currentTimeMillis());
+                journalQuietly(job);
+                continue;
+            }
+            job.setState(UploadJob.State.QUEUED);
+            job.setNextAttemptAt(null);
+            unfinished.add(job);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            boolean orphan = name.endsWith(CONTENT_SUFFIX)
+                    && !jobs.containsKey(name.substring(0, name.length() - CONTENT_SUFFIX.length()));
+            if (name.endsWith(TEMP_SUFFIX) || orphan) {
+                deleteQuietly(file);
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            System.err.println("Recovered " + unfinished.size() + " staged uploads");
+        }
+        pending.addAndGet(unfinished.size());
+        for (UploadJob job : unfinished) {
+            schedule(job, 0);
+        }
+    }
+
+    /**
+     * Forgets finished jobs older than {@code retention}.
+     */
+    private void purgeFinished() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (UploadJob job : jobs.values()) {
+            boolean expired;
+            synchronized (job) {
+                expired = isFinished(job) && job.getUpdatedAt() < cutoff;
+            }
+            if (expired) {
+                jobs.remove(job.getJobId());
+                deleteQuietly(jobPath(job.getJobId()));
+                deleteQuietly(contentPath(job.getJobId()));
+            }
+        }
+    }
+
+    /**
+     * Writes the job record to a temp file, flushes it and renames it over the previous record, so a
+     * crash leaves either the old or the new record but never a torn one. The directory is flushed
+     * too, so the rename itself (and the staged content's, which precedes the first record) survives a crash.
+     */
+    private void journal(UploadJob job) throws IOException {
+        byte[] record;
+        synchronized (job) {
+            record = objectMapper.writeValueAsBytes(job);
+        }
+        Path temp = directory.resolve(job.getJobId() + JOB_SUFFIX + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, jobPath(job.getJobId()), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    private void journalQuietly(UploadJob job) {
+        try {
+            journal(job);
+        } catch (IOException e) {
+            System.err.println("Could not journal upload job " + job.getJobId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the job after the delay. Once the queue is shutting down the job is left as journaled
+     * (QUEUED) and picked up by {@link #recover} on the next start.
+     */
+    private void schedule(UploadJob job, long delayMillis) {
+        try {
+            executor.schedule(() -> run(job), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Upload staging is shutting down; job " + job.getJobId() + " runs after the restart");
+        }
+    }
+
+    private long backoff(int attempt) {
+        return Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+    }
+
+    private UploadJob snapshot(UploadJob job) {
+        synchronized (job) {
+            return objectMapper.convertValue(job, UploadJob.class);
+        }
+    }
+
+    private Path jobPath(String jobId) {
+        return directory.resolve(jobId + JOB_SUFFIX);
+    }
+
+    private Path contentPath(String jobId) {
+        return directory.resolve(jobId + CONTENT_SUFFIX);
+    }
+
+    private static boolean isFinished(UploadJob job) {
+        return job.getState() == UploadJob.State.DONE || job.getState() == UploadJob.State.FAILED;
+    }
+
+    /**
+     * Whether another attempt could succeed: network errors, rate limiting and retryable Drive
+     * statuses, but not a rejected CSV or any other client error.
+     */
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof SalesCsvValidationException) {
+            return false;
+        }
+        if (e instanceof GoogleJsonResponseException) {
+            return DriveRequestExecutor.isRetryable((IOException) e);
+        }
+        return e instanceof IOException;
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return; // Some platforms (Windows) cannot open a directory; renames there are durable without it.
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete staged file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A staged file presented as the multipart upload it was received as.
+     */
+    private static class StagedFile implements MultipartFile {
+
+        private final Path path;
+        private final UploadJob job;
+
+        StagedFile(Path path, UploadJob job) {
+            this.path = path;
+            this.job = job;
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return job.getOriginalFileName();
+        }
+
+        @Override
+        public String getContentType() {
+            return job.getContentType();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return job.getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return job.getSize();
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
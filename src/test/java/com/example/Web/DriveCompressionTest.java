@@ -0,0 +1,81 @@
+package com.example.Web;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriveCompressionTest {
+
+	private final DriveCompression gzip = new DriveCompression("gzip", 6);
+
+	@Test
+	void compressedStreamIsValidGzip() throws IOException {
+		byte[] content = new byte[300_000]; // Several input buffers, part compressible, part random
+		Random random = new Random(42);
+		for (int i = 0; i < content.length; i++) {
+			content[i] = i < 200_000 ? (byte) ('a' + i % 5) : (byte) random.nextInt();
+		}
+
+		byte[] compressed = readAll(gzip.compress(new ByteArrayInputStream(content)), 7);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			assertArrayEquals(content, in.readAllBytes());
+		}
+		assertArrayEquals(compressed, readAll(gzip.compress(new ByteArrayInputStream(content)), 8192),
+				"output must not depend on how the stream is read");
+	}
+
+	@Test
+	void emptyContentCompressesToEmptyGzip() throws IOException {
+		byte[] compressed = readAll(gzip.compress(new ByteArrayInputStream(new byte[0])), 8192);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			assertEquals(0, in.readAllBytes().length);
+		}
+	}
+
+	@Test
+	void codecComesFromMetadataOrName() {
+		DriveFileMetadata byProperty = file("Bryco-2024-01-01_2024-01-15.csv.gz", Map.of(DriveCompression.CODEC_PROPERTY, "gzip"));
+		DriveFileMetadata byName = file("Bryco-2024-01-01_2024-01-15.csv.gz", null);
+		DriveFileMetadata raw = file("Bryco-2024-01-01_2024-01-15.csv", null);
+
+		assertTrue(DriveCompression.isGzip(byProperty));
+		assertTrue(DriveCompression.isGzip(byName));
+		assertFalse(DriveCompression.isGzip(raw));
+		assertEquals("Bryco-2024-01-01_2024-01-15.csv", DriveCompression.decodedName(byName));
+		assertEquals("2024-01-15", SalesFileName.parse(byName.getName()).getToDate());
+	}
+
+	@Test
+	void rejectsUnsupportedCodec() {
+		assertThrows(IllegalArgumentException.class, () -> new DriveCompression("zstd", 3));
+	}
+
+	private static DriveFileMetadata file(String name, Map<String, String> appProperties) {
+		DriveFileMetadata metadata = new DriveFileMetadata("f1", name, "application/gzip", 10L, null, null, null, null);
+		metadata.setAppProperties(appProperties);
+		return metadata;
+	}
+
+	private static byte[] readAll(InputStream in, int bufferSize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[bufferSize];
+		int read;
+		while ((read = in.read(buffer, 0, bufferSize)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}
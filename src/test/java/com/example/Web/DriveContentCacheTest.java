@@ -0,0 +1,183 @@
+package com.example.Web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DriveContentCacheTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void secondDownloadIsServedFromDisk() throws IOException {
+		DriveContentCache cache = newCache(DataSize.ofKilobytes(10));
+		AtomicInteger loads = new AtomicInteger();
+		DriveFileMetadata report = file("f1", "aaa", 5);
+
+		assertEquals("hello", read(cache.open(report, 5, () -> load(loads, "hello"))));
+		assertEquals("hello", read(cache.open(report, 5, () -> load(loads, "other"))));
+
+		assertEquals(1, loads.get());
+		assertEquals(1L, cache.getStats().get("hits"));
+		assertEquals(5L, cache.getStats().get("bytesSaved"));
+	}
+
+	@Test
+	void changedChecksumIsRefetchedAndOldVersionDropped() throws IOException {
+		DriveContentCache cache = newCache(DataSize.ofKilobytes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		read(cache.open(file("f1", "v1", 3), 3, () -> load(loads, "one")));
+		assertEquals("two", read(cache.open(file("f1", "v2", 3), 3, () -> load(loads, "two"))));
+
+		assertEquals(2, loads.get());
+		assertEquals(1, cache.getStats().get("files"));
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedWhenFull() throws IOException {
+		DriveContentCache cache = newCache(DataSize.ofBytes(10));
+		AtomicInteger loads = new AtomicInteger();
+
+		read(cache.open(file("a", "1", 4), 4, () -> load(loads, "aaaa")));
+		read(cache.open(file("b", "1", 4), 4, () -> load(loads, "bbbb")));
+		read(cache.open(file("a", "1", 4), 4, () -> load(loads, "aaaa"))); // a is now most recently used
+		read(cache.open(file("c", "1", 4), 4, () -> load(loads, "cccc"))); // evicts b
+
+		read(cache.open(file("a", "1", 4), 4, () -> load(loads, "aaaa")));
+		assertEquals(3, loads.get());
+		read(cache.open(file("b", "1", 4), 4, () -> load(loads, "bbbb")));
+		assertEquals(4, loads.get());
+	}
+
+	@Test
+	void indexSurvivesRestart() throws IOException {
+		AtomicInteger loads = new AtomicInteger();
+		read(newCache(DataSize.ofKilobytes(10)).open(file("f1", "aaa", 5), 5, () -> load(loads, "hello")));
+
+		DriveContentCache restarted = newCache(DataSize.ofKilobytes(10));
+		assertEquals("hello", read(restarted.open(file("f1", "aaa", 5), 5, () -> load(loads, "other"))));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void concurrentMissesShareOneDownload() throws Exception {
+		DriveContentCache cache = newCache(DataSize.ofKilobytes(10));
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		DriveFileMetadata report = file("f1", "aaa", 5);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> readers = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				readers.add(pool.submit(() -> read(cache.open(report, 5, () -> {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return load(loads, "hello");
+				}))));
+			}
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<String> reader : readers) {
+				assertEquals("hello", reader.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void streamedDownloadFillsTheCacheOnceReadToTheEnd() throws IOException {
+		DriveContentCache cache = newCache(DataSize.ofKilobytes(10));
+		AtomicInteger loads = new AtomicInteger();
+		DriveFileMetadata report = file("f1", "aaa", 5);
+		assertNull(cache.openIfCached(report, 5));
+
+		try (InputStream in = cache.cacheWhileReading(report, load(loads, "hello"))) {
+			assertEquals('h', in.read(), "bytes reach the caller before the file is cached");
+			assertNull(cache.openIfCached(report, 5));
+			assertEquals("ello", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+
+		assertEquals("hello", read(cache.openIfCached(report, 5)));
+		assertEquals("hello", read(cache.open(report, 5, () -> load(loads, "other"))));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void streamedDownloadClosedEarlyIsNotCached() throws IOException {
+		DriveContentCache cache = newCache(DataSize.ofKilobytes(10));
+		AtomicInteger loads = new AtomicInteger();
+		DriveFileMetadata report = file("f1", "aaa", 5);
+
+		try (InputStream in = cache.cacheWhileReading(report, load(loads, "hello"))) {
+			in.readNBytes(2); // The client went away.
+		}
+
+		assertNull(cache.openIfCached(report, 5));
+		assertEquals("hello", read(cache.open(report, 5, () -> load(loads, "hello"))));
+		assertEquals(5L, cache.getStats().get("sizeBytes"), "only the complete copy is kept");
+	}
+
+	@Test
+	void largeOrUnversionedFilesAreNotCacheable() throws IOException {
+		DriveContentCache cache = newCache(DataSize.ofBytes(10));
+		assertFalse(cache.isCacheable(file("big", "1", 11)));
+		assertFalse(cache.isCacheable(new DriveFileMetadata("doc", "doc", "application/vnd.google-apps.document",
+				null, null, null, null, null)));
+	}
+
+	private DriveContentCache newCache(DataSize maxSize) throws IOException {
+		DriveContentCache cache = new DriveContentCache(new DriveMetrics(new SimpleMeterRegistry()), true,
+				directory.toString(), maxSize, maxSize);
+		cache.load();
+		return cache;
+	}
+
+	private static DriveFileMetadata file(String id, String md5, long size) {
+		DriveFileMetadata metadata = new DriveFileMetadata(id, id + ".csv", "text/csv", size, null, null, null, 1L);
+		metadata.setMd5Checksum(md5);
+		return metadata;
+	}
+
+	private static ByteArrayInputStream load(AtomicInteger loads, String content) {
+		loads.incrementAndGet();
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String read(FileChannel channel) throws IOException {
+		try (FileChannel in = channel) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) in.size());
+			while (buffer.hasRemaining() && in.read(buffer) > 0) {
+				// Keep reading until the whole file is in the buffer.
+			}
+			return new String(buffer.array(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.Web;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DriveFolderCacheTest {
+
+	@Test
+	void secondLookupIsServedFromCache() throws IOException {
+		DriveFolderCache cache = new DriveFolderCache(Duration.ofMinutes(5), 10);
+		AtomicInteger loads = new AtomicInteger();
+
+		assertEquals("id-1", cache.resolve("root", "January", () -> "id-" + loads.incrementAndGet()));
+		assertEquals("id-1", cache.resolve("root", "January", () -> "id-" + loads.incrementAndGet()));
+
+		assertEquals(1, loads.get());
+		assertEquals(1L, cache.getStats().get("hits"));
+		assertEquals(1L, cache.getStats().get("misses"));
+	}
+
+	@Test
+	void expiredAndEvictedEntriesAreReloaded() throws IOException {
+		DriveFolderCache expiring = new DriveFolderCache(Duration.ZERO, 10);
+		AtomicInteger loads = new AtomicInteger();
+		expiring.resolve("root", "January", () -> "id-" + loads.incrementAndGet());
+		expiring.resolve("root", "January", () -> "id-" + loads.incrementAndGet());
+		assertEquals(2, loads.get());
+
+		DriveFolderCache small = new DriveFolderCache(Duration.ofMinutes(5), 2);
+		small.resolve("root", "January", () -> "jan");
+		small.resolve("root", "February", () -> "feb");
+		small.resolve("root", "January", () -> "jan");
+		small.resolve("root", "March", () -> "mar");
+		assertEquals("jan", small.peek("root", "January"));
+		assertNull(small.peek("root", "February"));
+		assertEquals(1L, small.getStats().get("evictions"));
+	}
+
+	@Test
+	void concurrentLookupsShareOneLoad() throws Exception {
+		DriveFolderCache cache = new DriveFolderCache(Duration.ofMinutes(5), 10);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(pool.submit(() -> cache.resolve("root", "January", () -> {
+					loads.incrementAndGet();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return "jan";
+				})));
+			}
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<String> result : results) {
+				assertEquals("jan", result.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void waitersGetTheLeadersFailureUnchanged() throws Exception {
+		DriveFolderCache cache = new DriveFolderCache(Duration.ofMinutes(5), 10);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(pool.submit(() -> cache.resolve("root", "January", () -> {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw new DriveRateLimitException("slow down", 7, null);
+				})));
+			}
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<String> result : results) {
+				ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+				assertInstanceOf(DriveRateLimitException.class, failure.getCause());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void failedLoadIsNotCached() throws IOException {
+		DriveFolderCache cache = new DriveFolderCache(Duration.ofMinutes(5), 10);
+		assertThrows(IOException.class, () -> cache.resolve("root", "January", () -> {
+			throw new IOException("boom");
+		}));
+		assertEquals("jan", cache.resolve("root", "January", () -> "jan"));
+	}
+}
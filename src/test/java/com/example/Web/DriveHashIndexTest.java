@@ -0,0 +1,89 @@
+package com.example.Web;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DriveHashIndexTest {
+
+	@Test
+	void concurrentLookupsShareOneListing() throws Exception {
+		DriveHashIndex index = new DriveHashIndex(Duration.ofMinutes(10), 100);
+		AtomicInteger listings = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<DriveFileMetadata>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(pool.submit(() -> index.findByHash("folder", "md5-a", "a.csv", null, folderId -> {
+					listings.incrementAndGet();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return List.of(file("a", "a.csv", "md5-a"));
+				})));
+			}
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<DriveFileMetadata> result : results) {
+				assertEquals("a", result.get(5, TimeUnit.SECONDS).getId());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(1, listings.get());
+	}
+
+	@Test
+	void changesMadeWhileAFolderIsListedAreKept() throws IOException {
+		DriveHashIndex index = new DriveHashIndex(Duration.ofMinutes(10), 100);
+
+		index.findByHash("folder", "md5-a", "a.csv", null, folderId -> {
+			// An upload and a delete finishing while the (now outdated) listing is in flight.
+			index.record("folder", file("b", "b.csv", "md5-b"));
+			index.forget("a");
+			return List.of(file("a", "a.csv", "md5-a"));
+		});
+
+		assertNull(index.findByHash("folder", "md5-a", "a.csv", null, folderId -> List.of()));
+		assertEquals("b", index.findByName("folder", "b.csv", folderId -> List.of()).getId());
+	}
+
+	@Test
+	void excludedFileIsNotItsOwnDuplicate() throws IOException {
+		DriveHashIndex index = new DriveHashIndex(Duration.ofMinutes(10), 100);
+		DriveHashIndex.FolderLister lister = folderId -> List.of(file("old", "r.csv", "md5"), file("new", "r.csv", "md5"));
+
+		assertEquals("old", index.findByHash("folder", "md5", "r.csv", "new", lister).getId());
+		assertNull(index.findByHash("other", "md5", "only.csv", "only", folderId -> List.of(file("only", "only.csv", "md5"))));
+	}
+
+	@Test
+	void sameContentUnderAnotherNameIsNotADuplicate() throws IOException {
+		DriveHashIndex index = new DriveHashIndex(Duration.ofMinutes(10), 100);
+		DriveHashIndex.FolderLister lister = folderId -> List.of(file("a", "BrandA-2024-01-01_2024-01-15.csv", "md5"));
+
+		assertNull(index.findByHash("folder", "md5", "BrandB-2024-01-01_2024-01-15.csv", null, lister));
+		assertEquals("a", index.findByHash("folder", "md5", "BrandA-2024-01-01_2024-01-15.csv", null, lister).getId());
+	}
+
+	private static DriveFileMetadata file(String id, String name, String md5) {
+		DriveFileMetadata file = new DriveFileMetadata(id, name, "text/csv", 10L, null, null, null, null);
+		file.setMd5Checksum(md5);
+		return file;
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.Web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriveMetadataMirrorTest {
+
+	private static final String ROOT = "root-folder";
+
+	private FakeDrive drive;
+	private DriveMetadataMirror mirror;
+	private String usFolder;
+
+	@BeforeEach
+	void setUp() {
+		drive = new FakeDrive();
+		String january = drive.addFolder("January", ROOT);
+		String amazon = drive.addFolder("Amazon", january);
+		usFolder = drive.addFolder("US", amazon);
+		drive.addFile("Bryco-2024-01-01_2024-01-15.csv", usFolder, 100);
+		drive.addFile("Acme-2024-01-16_2024-01-31.csv", usFolder, 200);
+
+		mirror = new DriveMetadataMirror(drive.client(), FakeDrive.unthrottledExecutor(), ROOT, false, Duration.ofSeconds(30));
+	}
+
+	@Test
+	void answersFromMirrorWithoutCallingDrive() throws IOException {
+		assertNull(mirror.listChildren(ROOT), "must not answer before the first crawl");
+
+		mirror.bootstrap();
+		int requestsAfterBootstrap = drive.getRequestCount();
+
+		assertEquals(List.of("Acme-2024-01-16_2024-01-31.csv", "Bryco-2024-01-01_2024-01-15.csv"), names(mirror.listChildren(usFolder)));
+		List<SalesFileEntry> matches = mirror.search("bryco", "Amazon", "US", "1", "2024-01-10", null);
+		assertEquals(1, matches.size());
+		assertEquals("January", matches.get(0).getMonth());
+		assertEquals("2024-01-15", matches.get(0).getToDate());
+		assertEquals(requestsAfterBootstrap, drive.getRequestCount());
+	}
+
+	@Test
+	void monthNumberOutsideTheYearIsRejected() throws IOException {
+		mirror.bootstrap();
+
+		assertThrows(IllegalArgumentException.class, () -> mirror.search(null, null, null, "13", null, null));
+		assertThrows(IllegalArgumentException.class, () -> mirror.search(null, null, null, "0", null, null));
+		assertThrows(IllegalArgumentException.class, () -> mirror.search(null, null, null, "99999999999", null, null));
+		assertEquals(2, mirror.search(null, null, null, "01", null, null).size());
+	}
+
+	@Test
+	void pollAppliesChangesIncrementally() throws IOException {
+		mirror.bootstrap();
+
+		String february = drive.addFolder("February", ROOT);
+		String walmart = drive.addFolder("Walmart", february);
+		String ca = drive.addFolder("CA", walmart);
+		String newFile = drive.addFile("Bryco-2024-02-01_2024-02-29.csv", ca, 300);
+		drive.rename(newFile, "Bryco-2024-02-01_2024-02-28.csv");
+		mirror.poll();
+
+		List<SalesFileEntry> februaryFiles = mirror.search(null, "Walmart", null, "February", null, null);
+		assertEquals(1, februaryFiles.size());
+		assertEquals("2024-02-28", februaryFiles.get(0).getToDate());
+
+		drive.trash(february);
+		mirror.poll();
+
+		assertTrue(mirror.search(null, "Walmart", null, null, null, null).isEmpty());
+		assertNull(mirror.listChildren(ca));
+	}
+
+	@Test
+	void renameKeepsChecksumAndAppProperties() throws IOException {
+		String fileId = drive.addFile("Zeta-2024-01-01_2024-01-31.csv", usFolder, "date,units\n2024-01-02,5\n".getBytes(StandardCharsets.UTF_8));
+		drive.getFile(fileId).setAppProperties(Map.of("rows", "1"));
+		mirror.bootstrap();
+		String md5 = drive.getFile(fileId).getMd5Checksum();
+
+		mirror.recordRenamed(fileId, "Zeta-2024-01-01_2024-01-30.csv");
+
+		DriveFileMetadata renamed = mirror.listChildren(usFolder).stream()
+				.filter(file -> file.getId().equals(fileId)).findFirst().orElseThrow();
+		assertEquals("Zeta-2024-01-01_2024-01-30.csv", renamed.getName());
+		assertEquals(md5, renamed.getMd5Checksum());
+		assertEquals(Map.of("rows", "1"), renamed.getAppProperties());
+	}
+
+	@Test
+	void folderMovedIntoTreeIsCrawled() throws IOException {
+		String elsewhere = drive.addFolder("Archive", "some-other-root");
+		String march = drive.addFolder("March", elsewhere);
+		String amazon = drive.addFolder("Amazon", march);
+		String de = drive.addFolder("DE", amazon);
+		drive.addFile("Bryco-2024-03-01_2024-03-31.csv", de, 10);
+		mirror.bootstrap();
+		assertTrue(mirror.search(null, null, "DE", null, null, null).isEmpty());
+
+		drive.move(march, ROOT);
+		mirror.poll();
+
+		assertEquals(1, mirror.search(null, null, "DE", "March", null, null).size());
+	}
+
+	private static List<String> names(List<DriveFileMetadata> files) {
+		return files.stream().map(DriveFileMetadata::getName).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.Web;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriveRequestExecutorTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void retriesThrottledCallsAndHalvesConcurrency() throws IOException {
+		DriveRequestExecutor executor = new DriveRequestExecutor(new DriveMetrics(registry), 1000, 1000, 16, 1, 32, 5,
+				Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(5));
+		AtomicInteger attempts = new AtomicInteger();
+
+		String result = executor.execute("files.list", () -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw error(403, "userRateLimitExceeded");
+			}
+			return "ok";
+		});
+
+		assertEquals("ok", result);
+		assertEquals(3, attempts.get());
+		assertEquals(2L, executor.getStats().get("retries"));
+		assertTrue(executor.getStats().get("concurrencyLimit").doubleValue() < 16);
+		assertEquals(2, registry.get("drive.calls").tags("operation", "files.list", "outcome", "THROTTLED", "status", "403").timer().count());
+		assertEquals(1, registry.get("drive.calls").tags("operation", "files.list", "outcome", "SUCCESS").timer().count());
+		assertEquals(2, registry.get("drive.calls.retries").counter().count());
+	}
+
+	@Test
+	void doesNotRetryClientErrors() {
+		DriveRequestExecutor executor = FakeDrive.unthrottledExecutor();
+		AtomicInteger attempts = new AtomicInteger();
+		GoogleJsonResponseException notFound = error(404, "notFound");
+
+		IOException thrown = assertThrows(IOException.class, () -> executor.execute("files.get", () -> {
+			attempts.incrementAndGet();
+			throw notFound;
+		}));
+
+		assertSame(notFound, thrown);
+		assertEquals(1, attempts.get());
+		assertFalse(DriveRequestExecutor.isThrottled(notFound));
+	}
+
+	@Test
+	void persistentThrottlingBecomesRateLimitException() {
+		DriveRequestExecutor executor = new DriveRequestExecutor(new DriveMetrics(registry), 1000, 1000, 4, 1, 4, 2,
+				Duration.ofMillis(1), Duration.ofMillis(2), Duration.ofSeconds(5));
+
+		assertThrows(DriveRateLimitException.class, () -> executor.execute("files.list", () -> {
+			throw error(429, "rateLimitExceeded");
+		}));
+	}
+
+	@Test
+	void rejectsWhenTokenWaitExceedsMaxWait() throws IOException {
+		DriveRequestExecutor executor = new DriveRequestExecutor(new DriveMetrics(registry), 0.01, 1, 4, 1, 4, 0,
+				Duration.ofMillis(1), Duration.ofMillis(2), Duration.ofMillis(10));
+
+		executor.execute("files.get", () -> "first call uses the burst");
+
+		assertThrows(DriveRateLimitException.class, () -> executor.execute("files.get", () -> "too soon"));
+		assertEquals(1L, executor.getStats().get("rejections"));
+	}
+
+	private static GoogleJsonResponseException error(int status, String reason) {
+		GoogleJsonError.ErrorInfo info = new GoogleJsonError.ErrorInfo();
+		info.setReason(reason);
+		GoogleJsonError details = new GoogleJsonError();
+		details.setCode(status);
+		details.setErrors(Collections.singletonList(info));
+		return new GoogleJsonResponseException(
+				new HttpResponseException.Builder(status, null, new HttpHeaders()), details);
+	}
+}
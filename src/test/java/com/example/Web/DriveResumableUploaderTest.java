@@ -0,0 +1,120 @@
+package com.example.Web;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.drive.model.File;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriveResumableUploaderTest {
+
+	private static final int CHUNK = DriveResumableUploader.CHUNK_GRANULARITY;
+
+	@Test
+	void uploadsInChunksAndResendsUncommittedBytes() throws IOException {
+		FakeResumableEndpoint drive = new FakeResumableEndpoint();
+		drive.failNextChunkWith = 503;
+		drive.commitOnlyHalfOfChunk = 2;
+		DriveResumableUploader uploader = new DriveResumableUploader(
+				drive.requestFactory(), JacksonFactory.getDefaultInstance(), "https://drive.test/", FakeDrive.unthrottledExecutor(), CHUNK, 3);
+
+		byte[] content = randomBytes(CHUNK * 3 + 1234);
+		File file = uploader.upload(new File().setName("Bryco-2024-01-01_2024-01-31.csv"), "text/csv", -1,
+				new ByteArrayInputStream(content));
+
+		assertEquals("uploaded-file", file.getId());
+		assertArrayEquals(content, drive.received.toByteArray());
+		assertTrue(drive.chunkRequests.get() >= 5, "expected the failed and partially committed chunks to be resent");
+	}
+
+	@Test
+	void emptyUploadFinalizesWithoutBody() throws IOException {
+		FakeResumableEndpoint drive = new FakeResumableEndpoint();
+		DriveResumableUploader uploader = new DriveResumableUploader(
+				drive.requestFactory(), JacksonFactory.getDefaultInstance(), "https://drive.test/", FakeDrive.unthrottledExecutor(), CHUNK, 0);
+
+		File file = uploader.upload(new File().setName("empty.csv"), "text/csv", 0, new ByteArrayInputStream(new byte[0]));
+
+		assertEquals("uploaded-file", file.getId());
+		assertEquals(0, drive.received.size());
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Minimal stand-in for Drive's resumable upload endpoint.
+	 */
+	private static final class FakeResumableEndpoint {
+		private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+		private final AtomicInteger chunkRequests = new AtomicInteger();
+		private int failNextChunkWith;
+		private int commitOnlyHalfOfChunk = -1;
+
+		private com.google.api.client.http.HttpRequestFactory requestFactory() {
+			return new MockHttpTransport() {
+				@Override
+				public LowLevelHttpRequest buildRequest(String method, String url) {
+					return new MockLowLevelHttpRequest(url) {
+						@Override
+						public LowLevelHttpResponse execute() throws IOException {
+							return "POST".equals(method) ? startSession() : putChunk(this);
+						}
+					};
+				}
+			}.createRequestFactory();
+		}
+
+		private LowLevelHttpResponse startSession() {
+			return new MockLowLevelHttpResponse().addHeader("Location", "https://drive.test/session/1");
+		}
+
+		private LowLevelHttpResponse putChunk(MockLowLevelHttpRequest request) throws IOException {
+			String contentRange = request.getFirstHeaderValue("Content-Range");
+			String total = contentRange.substring(contentRange.indexOf('/') + 1);
+			if (!contentRange.startsWith("bytes */")) {
+				int requestNumber = chunkRequests.incrementAndGet();
+				if (failNextChunkWith != 0) {
+					int status = failNextChunkWith;
+					failNextChunkWith = 0;
+					return new MockLowLevelHttpResponse().setStatusCode(status)
+							.setContentType("application/json").setContent("{\"error\":{\"code\":" + status + "}}");
+				}
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				request.getStreamingContent().writeTo(body);
+				byte[] bytes = body.toByteArray();
+				long start = Long.parseLong(contentRange.substring(6, contentRange.indexOf('-')));
+				if (start != received.size()) {
+					throw new IllegalStateException("Chunk starts at " + start + " but " + received.size() + " bytes are committed");
+				}
+				int accept = requestNumber == commitOnlyHalfOfChunk ? bytes.length / 2 : bytes.length;
+				received.write(bytes, 0, accept);
+			}
+			if (!"*".equals(total) && Long.parseLong(total) == received.size()) {
+				return new MockLowLevelHttpResponse().setStatusCode(200).setContentType("application/json")
+						.setContent("{\"id\":\"uploaded-file\",\"size\":\"" + received.size() + "\"}");
+			}
+			MockLowLevelHttpResponse incomplete = new MockLowLevelHttpResponse().setStatusCode(308);
+			if (received.size() > 0) {
+				incomplete.addHeader("Range", "bytes=0-" + (received.size() - 1));
+			}
+			return incomplete;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.example.Web;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriveZipExporterTest {
+
+	@TempDir
+	Path directory;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+	private final AtomicInteger maxSpooled = new AtomicInteger();
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void writesEntriesInOrderWithBoundedPrefetch() throws IOException {
+		List<FolderExportEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			entries.add(entry("March/Amazon/US/file-" + i + ".csv", "id-" + i));
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		new DriveZipExporter(this::slowOpen, executor, 3).write(entries, out);
+
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+			for (int i = 0; i < 10; i++) {
+				ZipEntry entry = zip.getNextEntry();
+				assertEquals("March/Amazon/US/file-" + i + ".csv", entry.getName());
+				assertEquals("content of id-" + i, new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+		assertTrue(maxSpooled.get() <= 3, "at most the window of files may be held at once, was " + maxSpooled.get());
+		assertEquals(0, spooledFiles());
+	}
+
+	@Test
+	void releasesPrefetchedFilesWhenClientGoesAway() throws IOException {
+		List<FolderExportEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			entries.add(entry("file-" + i + ".csv", "id-" + i));
+		}
+		OutputStream brokenClient = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+
+		assertThrows(IOException.class, () -> new DriveZipExporter(this::slowOpen, executor, 4).write(entries, brokenClient));
+
+		assertEquals(0, spooledFiles(), "spooled files must be deleted");
+	}
+
+	/**
+	 * Spools the file like the service does: a temp file deleted when its channel is closed.
+	 */
+	private FileChannel slowOpen(DriveFileMetadata file) throws IOException {
+		try {
+			Thread.sleep(10);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Path spool = Files.write(directory.resolve(file.getId()), ("content of " + file.getId()).getBytes(StandardCharsets.UTF_8));
+		maxSpooled.accumulateAndGet((int) spooledFiles(), Math::max);
+		return FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	private long spooledFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	private static FolderExportEntry entry(String path, String fileId) {
+		return new FolderExportEntry(path, new DriveFileMetadata(fileId, path, "text/csv", 1L, null, null, null, 0L));
+	}
+}
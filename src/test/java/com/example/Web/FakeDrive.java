@@ -0,0 +1,563 @@
+package com.example.Web;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
+import com.google.api.services.drive.model.StartPageToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-process stand-in for the parts of the Drive v3 API this service uses. It keeps files in
+ * memory, records every mutation in a change log for the Changes feed, and is plugged into a
+ * real {@link Drive} client through a mock HTTP transport.
+ * <p>
+ * For benchmarks (src/jmh/java) it can add a fixed latency to every call, answer a share of calls
+ * with quota errors, and drop uploaded content. Requests are answered one at a time, but the latency
+ * is spent outside that lock so concurrent callers overlap their round-trips as they would with Drive.
+ */
+class FakeDrive {
+
+	private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+	private static final Pattern PARENT_QUERY = Pattern.compile("'([^']+)' in parents");
+	private static final Pattern NAME_QUERY = Pattern.compile("name = '([^']+)'");
+	private static final Pattern FILE_PATH = Pattern.compile(".*/files/([^/]+)$");
+
+	private final Map<String, File> files = new LinkedHashMap<>();
+	private final Map<String, byte[]> contents = new LinkedHashMap<>();
+	private final Map<String, UploadSession> uploadSessions = new LinkedHashMap<>();
+	private final List<Change> changes = new ArrayList<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private int throttledBatchItems;
+	private int throttledBatches;
+	private int failedUploadChunks;
+	private boolean discardUploadedContent;
+	private volatile long latencyMillis;
+	private volatile double quotaErrorRate;
+	private final AtomicInteger quotaErrors = new AtomicInteger();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+
+	synchronized String addFolder(String name, String parentId) {
+		return add(name, DriveMetadataMirror.FOLDER_MIME_TYPE, parentId, null);
+	}
+
+	synchronized String addFile(String name, String parentId, long size) {
+		return add(name, "text/csv", parentId, size);
+	}
+
+	synchronized String addFile(String name, String parentId, byte[] content) {
+		String id = add(name, "text/csv", parentId, (long) content.length);
+		contents.put(id, content);
+		files.get(id).setMd5Checksum(md5(content));
+		return id;
+	}
+
+	synchronized void rename(String fileId, String newName) {
+		files.get(fileId).setName(newName);
+		recordChange(fileId);
+	}
+
+	synchronized void move(String fileId, String newParentId) {
+		files.get(fileId).setParents(new ArrayList<>(Collections.singletonList(newParentId)));
+		recordChange(fileId);
+	}
+
+	synchronized void trash(String fileId) {
+		files.get(fileId).setTrashed(true);
+		recordChange(fileId);
+	}
+
+	/**
+	 * Makes the next {@code count} items sent in batch requests fail with a 403 rate limit error.
+	 */
+	synchronized void throttleNextBatchItems(int count) {
+		throttledBatchItems = count;
+	}
+
+	/**
+	 * Makes the next {@code count} batch requests fail as a whole with a 503, before any item is handled.
+	 */
+	synchronized void throttleNextBatches(int count) {
+		throttledBatches = count;
+	}
+
+	/**
+	 * Makes the next {@code count} resumable upload chunks fail with an error that is not retried,
+	 * so the upload is interrupted at once and has to be resumed.
+	 */
+	synchronized void failNextUploadChunks(int count) {
+		failedUploadChunks = count;
+	}
+
+	/**
+	 * Delays every call by this much before it is answered, like a round-trip to Drive.
+	 */
+	void setLatency(Duration latency) {
+		latencyMillis = latency.toMillis();
+	}
+
+	/**
+	 * Answers this share (0 to 1) of calls with a 403 userRateLimitExceeded error instead of handling them.
+	 */
+	void setQuotaErrorRate(double rate) {
+		quotaErrorRate = rate;
+	}
+
+	/**
+	 * Keeps only the size and MD5 of uploaded files, so long upload benchmarks do not fill the heap.
+	 */
+	synchronized void discardUploadedContent() {
+		discardUploadedContent = true;
+	}
+
+	int getQuotaErrorCount() {
+		return quotaErrors.get();
+	}
+
+	/**
+	 * Heap allocated by this fake while answering calls, so callers measuring allocation can leave it out.
+	 */
+	long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+
+	synchronized File getFile(String fileId) {
+		return files.get(fileId);
+	}
+
+	synchronized String getContent(String fileId) {
+		byte[] content = contents.get(fileId);
+		return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+	}
+
+	synchronized List<File> getChildren(String parentId) {
+		return files.values().stream()
+				.filter(file -> file.getParents().contains(parentId) && !Boolean.TRUE.equals(file.getTrashed()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * A request executor whose limits never get in the way of a test.
+	 */
+	static DriveRequestExecutor unthrottledExecutor() {
+		return unthrottledExecutor(new DriveMetrics(new SimpleMeterRegistry()));
+	}
+
+	static DriveRequestExecutor unthrottledExecutor(DriveMetrics metrics) {
+		return new DriveRequestExecutor(metrics, 1_000_000, 1_000_000, 64, 1, 64, 3,
+				Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(5));
+	}
+
+	int getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * Builds a service on this fake with the settings the tests use, the folder tree rooted at
+	 * {@code rootFolderId} and the metadata mirror disabled. Drive calls are recorded in {@code metrics}.
+	 */
+	GoogleDriveService newService(String rootFolderId, String dedupPolicy, DriveCompression compression,
+								  DriveMetrics metrics) throws IOException {
+		DriveRequestExecutor driveCalls = unthrottledExecutor(metrics);
+		GoogleDriveService service = new GoogleDriveService(client(), driveCalls,
+				new DriveFolderCache(Duration.ofMinutes(30), 100),
+				new DriveMetadataMirror(client(), driveCalls, rootFolderId, false, Duration.ofSeconds(30)),
+				metrics,
+				new DriveContentCache(metrics, false, Files.createTempDirectory("content-cache").toString(),
+						DataSize.ofMegabytes(1), DataSize.ofMegabytes(1)),
+				new DriveHashIndex(Duration.ofMinutes(10), 100),
+				new SalesCsvValidator(true, List.of("date", "units"), "date", DataSize.ofKilobytes(64), 9),
+				compression);
+		ReflectionTestUtils.setField(service, "rootFolderId", rootFolderId);
+		ReflectionTestUtils.setField(service, "uploadMode", "resumable");
+		ReflectionTestUtils.setField(service, "uploadChunkSize", DataSize.ofMegabytes(8));
+		ReflectionTestUtils.setField(service, "maxChunkRetries", 3);
+		ReflectionTestUtils.setField(service, "dedupPolicy", dedupPolicy);
+		ReflectionTestUtils.setField(service, "batchParallelism", 1);
+		ReflectionTestUtils.setField(service, "bulkMaxItemRetries", 3);
+		ReflectionTestUtils.setField(service, "exportParallelism", 1);
+		ReflectionTestUtils.setField(service, "exportPrefetchWindow", 1);
+		service.init();
+		return service;
+	}
+
+	Drive client() {
+		MockHttpTransport transport = new MockHttpTransport() {
+			@Override
+			public LowLevelHttpRequest buildRequest(String method, String url) {
+				return new MockLowLevelHttpRequest(url) {
+					private String content;
+
+					@Override
+					public LowLevelHttpResponse execute() throws IOException {
+						requestCount.incrementAndGet();
+						simulateLatency();
+						if (quotaErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < quotaErrorRate) {
+							quotaErrors.incrementAndGet();
+							return rateLimited();
+						}
+						long allocatedBefore = threadAllocatedBytes();
+						try {
+							getContentAsString(); // Serialized here rather than under the fake's lock
+							return handle(method, new GenericUrl(url), this);
+						} finally {
+							allocatedBytes.addAndGet(threadAllocatedBytes() - allocatedBefore);
+						}
+					}
+
+					@Override
+					public String getContentAsString() throws IOException {
+						if (content == null) {
+							content = super.getContentAsString();
+						}
+						return content;
+					}
+				};
+			}
+		};
+		return new Drive.Builder(transport, JSON_FACTORY, null)
+				.setApplicationName("fake-drive-test")
+				.build();
+	}
+
+	private void simulateLatency() throws IOException {
+		if (latencyMillis > 0) {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted during simulated latency");
+			}
+		}
+	}
+
+	private static long threadAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	private synchronized LowLevelHttpResponse handle(String method, GenericUrl url, MockLowLevelHttpRequest request)
+			throws IOException {
+		String path = url.getRawPath();
+		if ("POST".equals(method) && path.endsWith("/batch/drive/v3")) {
+			return batch(request);
+		}
+		if ("GET".equals(method) && path.endsWith("/changes/startPageToken")) {
+			return json(new StartPageToken().setStartPageToken(String.valueOf(changes.size())));
+		}
+		if ("GET".equals(method) && path.endsWith("/changes")) {
+			return json(listChanges(url));
+		}
+		if ("GET".equals(method) && path.endsWith("/files")) {
+			return json(listFiles(url));
+		}
+		if (path.contains("/upload/") && url.getFirst("upload_id") != null) {
+			return uploadChunk((String) url.getFirst("upload_id"), request);
+		}
+		if (path.contains("/upload/") && "resumable".equals(url.getFirst("uploadType"))) {
+			return startUploadSession(FILE_PATH.matcher(path).matches() ? fileIdOf(path) : null, url, request);
+		}
+		if (path.contains("/upload/") && "multipart".equals(url.getFirst("uploadType"))) {
+			return uploadMultipart(FILE_PATH.matcher(path).matches() ? fileIdOf(path) : null, request);
+		}
+		if ("POST".equals(method) && path.endsWith("/files")) {
+			File metadata = JSON_FACTORY.fromString(request.getContentAsString(), File.class);
+			return json(files.get(add(metadata.getName(), metadata.getMimeType(), metadata.getParents().get(0), null)));
+		}
+		if (FILE_PATH.matcher(path).matches() && files.containsKey(fileIdOf(path))) {
+			String fileId = fileIdOf(path);
+			if ("GET".equals(method)) {
+				return "media".equals(url.getFirst("alt"))
+						? new MockLowLevelHttpResponse().setContentType("text/csv").setContent(contents.getOrDefault(fileId, new byte[0]))
+						: json(files.get(fileId));
+			}
+			if ("PATCH".equals(method)) {
+				File patch = JSON_FACTORY.fromString(request.getContentAsString(), File.class);
+				File file = files.get(fileId);
+				if (patch.getName() != null) {
+					file.setName(patch.getName());
+				}
+				if (patch.getAppProperties() != null) {
+					Map<String, String> properties = file.getAppProperties() != null ? file.getAppProperties() : new LinkedHashMap<>();
+					Map<String, String> merged = new LinkedHashMap<>(properties);
+					merged.putAll(patch.getAppProperties());
+					if (merged.size() > SalesCsvStats.MAX_APP_PROPERTIES) {
+						return new MockLowLevelHttpResponse().setStatusCode(400).setContentType("application/json")
+								.setContent("{\"error\":{\"code\":400,\"message\":\"The limit of 30 appProperties has been exceeded\"}}");
+					}
+					file.setAppProperties(merged);
+				}
+				recordChange(fileId);
+				return json(files.get(fileId));
+			}
+			if ("DELETE".equals(method)) {
+				files.remove(fileId);
+				contents.remove(fileId);
+				return new MockLowLevelHttpResponse().setStatusCode(204);
+			}
+		}
+		return new MockLowLevelHttpResponse().setStatusCode(404).setContentType("application/json")
+				.setContent("{\"error\":{\"code\":404,\"message\":\"Not found: " + method + " " + path + "\"}}");
+	}
+
+	/**
+	 * Creates a file (or, with a file ID, replaces its content) from a multipart/related upload whose
+	 * first part is the JSON metadata and second part the content.
+	 */
+	private LowLevelHttpResponse uploadMultipart(String fileId, MockLowLevelHttpRequest request) throws IOException {
+		String boundary = request.getContentType().replaceAll(".*boundary=\"?([^\";]+)\"?.*", "$1");
+		List<String> parts = new ArrayList<>();
+		for (String part : request.getContentAsString().split("--" + Pattern.quote(boundary))) {
+			int bodyStart = part.indexOf("\r\n\r\n");
+			if (bodyStart >= 0) {
+				parts.add(part.substring(bodyStart + 4, part.length() - 2)); // Drop the CRLF before the next boundary
+			}
+		}
+		return storeUpload(fileId, JSON_FACTORY.fromString(parts.get(0), File.class),
+				parts.get(1).getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Opens a resumable session; the session URI is this fake's upload URL with an {@code upload_id}.
+	 */
+	private LowLevelHttpResponse startUploadSession(String fileId, GenericUrl url, MockLowLevelHttpRequest request)
+			throws IOException {
+		if (fileId != null && !files.containsKey(fileId)) {
+			return notFound(fileId);
+		}
+		String body = request.getContentAsString();
+		File metadata = body.isEmpty() ? new File() : JSON_FACTORY.fromString(body, File.class);
+		String uploadId = "session-" + nextId.incrementAndGet();
+		uploadSessions.put(uploadId, new UploadSession(fileId, metadata));
+		GenericUrl location = new GenericUrl(url.build());
+		location.put("upload_id", uploadId);
+		MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+		response.addHeader("Location", location.build());
+		return response;
+	}
+
+	/**
+	 * Appends a chunk ({@code Content-Range: bytes first-last/total}) to a session, answering 308 until
+	 * the total is reached.
+	 */
+	private LowLevelHttpResponse uploadChunk(String uploadId, MockLowLevelHttpRequest request) throws IOException {
+		UploadSession session = uploadSessions.get(uploadId);
+		if (session == null) {
+			return notFound(uploadId);
+		}
+		byte[] chunk = request.getContentAsString().getBytes(StandardCharsets.ISO_8859_1);
+		if (chunk.length > 0 && failedUploadChunks > 0) {
+			failedUploadChunks--;
+			return new MockLowLevelHttpResponse().setStatusCode(400).setContentType("application/json")
+					.setContent("{\"error\":{\"code\":400,\"message\":\"Chunk rejected\"}}");
+		}
+		session.content.write(chunk, 0, chunk.length);
+		String contentRange = request.getFirstHeaderValue("Content-Range");
+		String total = contentRange != null ? contentRange.substring(contentRange.indexOf('/') + 1) : String.valueOf(session.content.size());
+		if ("*".equals(total) || Long.parseLong(total) > session.content.size()) {
+			MockLowLevelHttpResponse response = new MockLowLevelHttpResponse().setStatusCode(308);
+			if (session.content.size() > 0) {
+				response.addHeader("Range", "bytes=0-" + (session.content.size() - 1));
+			}
+			return response;
+		}
+		uploadSessions.remove(uploadId);
+		return storeUpload(session.fileId, session.metadata, session.content.toByteArray());
+	}
+
+	private LowLevelHttpResponse storeUpload(String fileId, File metadata, byte[] content) throws IOException {
+		if (fileId == null) {
+			fileId = add(metadata.getName(), metadata.getMimeType(), metadata.getParents().get(0), null);
+			files.get(fileId).setAppProperties(metadata.getAppProperties());
+		} else if (!files.containsKey(fileId)) {
+			return notFound(fileId);
+		}
+		if (discardUploadedContent) {
+			contents.remove(fileId);
+		} else {
+			contents.put(fileId, content);
+		}
+		files.get(fileId)
+				.setSize((long) content.length)
+				.setMd5Checksum(md5(content))
+				.setModifiedTime(new DateTime(System.currentTimeMillis()));
+		recordChange(fileId);
+		return json(files.get(fileId));
+	}
+
+	private static MockLowLevelHttpResponse rateLimited() {
+		return new MockLowLevelHttpResponse().setStatusCode(403).setContentType("application/json")
+				.setContent("{\"error\":{\"code\":403,\"message\":\"Rate Limit Exceeded\","
+						+ "\"errors\":[{\"reason\":\"userRateLimitExceeded\"}]}}");
+	}
+
+	private static MockLowLevelHttpResponse notFound(String id) {
+		return new MockLowLevelHttpResponse().setStatusCode(404).setContentType("application/json")
+				.setContent("{\"error\":{\"code\":404,\"message\":\"File not found: " + id + "\"}}");
+	}
+
+	private static String fileIdOf(String path) {
+		Matcher matcher = FILE_PATH.matcher(path);
+		matcher.matches();
+		return matcher.group(1);
+	}
+
+	private static String md5(byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Answers a multipart/mixed batch of PATCH (rename) and DELETE calls on files, one part per call.
+	 */
+	private LowLevelHttpResponse batch(MockLowLevelHttpRequest request) throws IOException {
+		if (throttledBatches > 0) {
+			throttledBatches--;
+			return new MockLowLevelHttpResponse().setStatusCode(503)
+					.setContentType("application/json; charset=UTF-8")
+					.setContent("{\"error\":{\"code\":503,\"message\":\"Backend Error\"}}");
+		}
+		String boundary = request.getContentType().replaceAll(".*boundary=\"?([^\";]+)\"?.*", "$1");
+		StringBuilder response = new StringBuilder();
+		for (String part : request.getContentAsString().split("--" + Pattern.quote(boundary))) {
+			int requestStart = part.indexOf("\r\n\r\n");
+			if (requestStart < 0) {
+				continue;
+			}
+			String call = part.substring(requestStart + 4);
+			String[] requestLine = call.substring(0, call.indexOf("\r\n")).split(" ");
+			int bodyStart = call.indexOf("\r\n\r\n");
+			String body = bodyStart < 0 ? "" : call.substring(bodyStart + 4).trim();
+			String fileId = new GenericUrl(requestLine[1]).getRawPath().replaceAll(".*/files/", "");
+
+			response.append("--batch_fake\r\nContent-Type: application/http\r\n\r\n");
+			if (throttledBatchItems > 0) {
+				throttledBatchItems--;
+				appendResponse(response, "403 Forbidden", "{\"error\":{\"code\":403,\"message\":\"Rate Limit Exceeded\","
+						+ "\"errors\":[{\"reason\":\"userRateLimitExceeded\"}]}}");
+			} else if (!files.containsKey(fileId)) {
+				appendResponse(response, "404 Not Found", "{\"error\":{\"code\":404,\"message\":\"File not found: " + fileId + "\"}}");
+			} else if ("DELETE".equals(requestLine[0])) {
+				files.remove(fileId);
+				response.append("HTTP/1.1 204 No Content\r\n\r\n\r\n");
+			} else {
+				files.get(fileId).setName(JSON_FACTORY.fromString(body, File.class).getName());
+				recordChange(fileId);
+				appendResponse(response, "200 OK", "{\"id\":\"" + fileId + "\"}");
+			}
+		}
+		response.append("--batch_fake--\r\n");
+		return new MockLowLevelHttpResponse()
+				.setContentType("multipart/mixed; boundary=batch_fake")
+				.setContent(response.toString());
+	}
+
+	private static void appendResponse(StringBuilder response, String status, String json) {
+		response.append("HTTP/1.1 ").append(status).append("\r\nContent-Type: application/json; charset=UTF-8\r\n\r\n")
+				.append(json).append("\r\n");
+	}
+
+	private FileList listFiles(GenericUrl url) {
+		String query = (String) url.getFirst("q");
+		Matcher parent = PARENT_QUERY.matcher(query);
+		String parentId = parent.find() ? parent.group(1) : null;
+		Matcher name = NAME_QUERY.matcher(query);
+		String nameFilter = name.find() ? name.group(1) : null;
+		boolean foldersOnly = query.contains("mimeType = '" + DriveMetadataMirror.FOLDER_MIME_TYPE + "'");
+		List<File> matching = files.values().stream()
+				.filter(file -> !Boolean.TRUE.equals(file.getTrashed()))
+				.filter(file -> parentId == null || file.getParents().contains(parentId))
+				.filter(file -> nameFilter == null || nameFilter.equals(file.getName()))
+				.filter(file -> !foldersOnly || DriveMetadataMirror.FOLDER_MIME_TYPE.equals(file.getMimeType()))
+				.collect(Collectors.toList());
+
+		int pageSize = url.getFirst("pageSize") != null ? Integer.parseInt((String) url.getFirst("pageSize")) : 100;
+		int offset = url.getFirst("pageToken") != null ? Integer.parseInt((String) url.getFirst("pageToken")) : 0;
+		int end = Math.min(matching.size(), offset + pageSize);
+		return new FileList()
+				.setFiles(new ArrayList<>(matching.subList(offset, end)))
+				.setNextPageToken(end < matching.size() ? String.valueOf(end) : null);
+	}
+
+	private ChangeList listChanges(GenericUrl url) {
+		int from = Integer.parseInt((String) url.getFirst("pageToken"));
+		return new ChangeList()
+				.setChanges(new ArrayList<>(changes.subList(from, changes.size())))
+				.setNewStartPageToken(String.valueOf(changes.size()));
+	}
+
+	private String add(String name, String mimeType, String parentId, Long size) {
+		String id = "fake-" + nextId.incrementAndGet();
+		DateTime now = new DateTime(System.currentTimeMillis());
+		files.put(id, new File()
+				.setId(id)
+				.setName(name)
+				.setMimeType(mimeType)
+				.setParents(new ArrayList<>(Collections.singletonList(parentId)))
+				.setSize(size)
+				.setCreatedTime(now)
+				.setModifiedTime(now)
+				.setTrashed(false));
+		recordChange(id);
+		return id;
+	}
+
+	private void recordChange(String fileId) {
+		File file = files.get(fileId);
+		changes.add(new Change().setFileId(fileId).setRemoved(false).setFile(file.clone()));
+	}
+
+	private static MockLowLevelHttpResponse json(Object body) throws IOException {
+		return new MockLowLevelHttpResponse()
+				.setContentType("application/json")
+				.setContent(JSON_FACTORY.toString(body));
+	}
+
+	private static class UploadSession {
+		final String fileId;
+		final File metadata;
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		UploadSession(String fileId, File metadata) {
+			this.fileId = fileId;
+			this.metadata = metadata;
+		}
+	}
+}
@@ -1,11 +1,50 @@
 package com.example.Web;
 
+import com.google.api.services.drive.Drive;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 
-@SpringBootTest
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@SpringBootTest(properties = "spring.main.allow-bean-definition-overriding=true")
 class GoogleDriveApplicationTests {
 
+	/**
+	 * Replaces the credential-backed Drive client with the in-memory fake, so the context starts
+	 * without Google credentials.
+	 */
+	@TestConfiguration
+	static class FakeDriveConfiguration {
+
+		@Bean
+		FakeDrive fakeDrive() {
+			return new FakeDrive();
+		}
+
+		@Bean
+		Drive drive(FakeDrive fakeDrive) {
+			return fakeDrive.client();
+		}
+	}
+
+	/**
+	 * Keeps the local caches and the staging queue away from the directories a real instance on
+	 * this machine would use (the queue would otherwise pick up its staged uploads).
+	 */
+	@DynamicPropertySource
+	static void localDirectories(DynamicPropertyRegistry registry) throws IOException {
+		Path directory = Files.createTempDirectory("drive-context-test");
+		registry.add("google.drive.upload.staging.directory", () -> directory.resolve("staging").toString());
+		registry.add("google.drive.content-cache.directory", () -> directory.resolve("content-cache").toString());
+		registry.add("google.drive.aggregation.cache.directory", () -> directory.resolve("columns").toString());
+	}
+
 	@Test
 	void contextLoads() {
 	}
@@ -0,0 +1,295 @@
+package com.example.Web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GoogleDriveServiceTest {
+
+	private static final String ROOT = "root-folder";
+
+	private FakeDrive drive;
+	private GoogleDriveService service;
+	private String folder;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		drive = new FakeDrive();
+		folder = drive.addFolder("US", ROOT);
+		service = newService(new DriveCompression("none", 6));
+	}
+
+	private GoogleDriveService newService(DriveCompression compression) throws IOException {
+		return drive.newService(ROOT, "skip", compression, new DriveMetrics(new SimpleMeterRegistry()));
+	}
+
+	@Test
+	void identicalUploadIsSkipped() throws IOException {
+		UploadResult first = service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+		int requestsAfterFirst = drive.getRequestCount();
+
+		UploadResult second = service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		assertFalse(first.isDeduplicated());
+		assertTrue(second.isDeduplicated());
+		assertEquals(first.getFileId(), second.getFileId());
+		assertEquals(1, drive.getRequestCount() - requestsAfterFirst, "only the files.get confirming the duplicate");
+	}
+
+	@Test
+	void identicalUploadOutsideItsDeclaredRangeIsRejectedNotSkipped() throws IOException {
+		service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+		String usFolder = service.resolveCountryFolder("1", "Amazon", "US");
+
+		SalesCsvValidationException rejected = assertThrows(SalesCsvValidationException.class,
+				() -> service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-16", "2024-01-31"));
+
+		assertTrue(rejected.getMessage().contains("2024-01-02"), rejected.getMessage());
+		assertEquals(1, drive.getChildren(usFolder).size());
+	}
+
+	@Test
+	void identicalStreamUploadIsSkippedButNotMatchedWithItself() throws IOException {
+		UploadResult first = service.uploadSalesDataStream(stream("date,units\n2024-01-02,5\n"), -1, "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		assertFalse(first.isDeduplicated(), "the folder is indexed after the transfer, with the new file in it");
+		assertNotNull(drive.getFile(first.getFileId()));
+
+		UploadResult second = service.uploadSalesDataStream(stream("date,units\n2024-01-02,5\n"), -1, "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		assertTrue(second.isDeduplicated());
+		assertEquals(first.getFileId(), second.getFileId());
+		String usFolder = service.resolveCountryFolder("1", "Amazon", "US");
+		assertEquals(1, drive.getChildren(usFolder).size(), "the second copy is deleted again");
+	}
+
+	@Test
+	void identicalContentUnderAnotherNameIsUploadedNotSkipped() throws IOException {
+		UploadResult bryco = service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		UploadResult acme = service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Acme", "2024-01-01", "2024-01-15");
+		UploadResult streamed = service.uploadSalesDataStream(stream("date,units\n2024-01-02,5\n"), -1, "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-31");
+
+		assertFalse(acme.isDeduplicated());
+		assertFalse(streamed.isDeduplicated());
+		assertNotEquals(bryco.getFileId(), acme.getFileId());
+		assertEquals("Acme-2024-01-01_2024-01-15.csv", drive.getFile(acme.getFileId()).getName());
+		assertEquals("Bryco-2024-01-01_2024-01-31.csv", drive.getFile(streamed.getFileId()).getName());
+		assertEquals(3, drive.getChildren(service.resolveCountryFolder("1", "Amazon", "US")).size());
+	}
+
+	@Test
+	void replacePolicyOverwritesSameNamedFileInPlace() throws IOException {
+		ReflectionTestUtils.setField(service, "dedupPolicy", "replace");
+		UploadResult first = service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		UploadResult second = service.uploadSalesDataFile(csv("date,units\n2024-01-02,7\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		assertTrue(second.isReplaced());
+		assertEquals(first.getFileId(), second.getFileId());
+		assertEquals("date,units\n2024-01-02,7\n", drive.getContent(second.getFileId()));
+	}
+
+	@Test
+	void offPolicyAlwaysUploads() throws IOException {
+		ReflectionTestUtils.setField(service, "dedupPolicy", "off");
+		UploadResult first = service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+		UploadResult second = service.uploadSalesDataFile(csv("date,units\n2024-01-02,5\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		assertFalse(second.isDeduplicated());
+		assertNotEquals(first.getFileId(), second.getFileId());
+	}
+
+	@Test
+	void bulkDeleteUsesOneRoundTripPerHundredFiles() {
+		List<String> fileIds = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			fileIds.add(drive.addFile("file-" + i + ".csv", folder, 10));
+		}
+		int requestsBefore = drive.getRequestCount();
+
+		List<BulkOperationResult> results = service.deleteFiles(fileIds);
+
+		assertEquals(3, drive.getRequestCount() - requestsBefore);
+		assertTrue(results.stream().allMatch(BulkOperationResult::isSuccess));
+		assertNull(drive.getFile(fileIds.get(249)));
+	}
+
+	@Test
+	void bulkRenameRetriesOnlyThrottledItems() {
+		List<BulkRenameRequest> renames = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			renames.add(new BulkRenameRequest(drive.addFile("old-" + i + ".csv", folder, 10), "new-" + i + ".csv"));
+		}
+		renames.add(new BulkRenameRequest("missing", "whatever.csv"));
+		drive.throttleNextBatchItems(2);
+
+		List<BulkOperationResult> results = service.renameFiles(renames);
+
+		for (int i = 0; i < 5; i++) {
+			assertTrue(results.get(i).isSuccess());
+			assertEquals("new-" + i + ".csv", drive.getFile(renames.get(i).getFileId()).getName());
+		}
+		assertEquals(2, results.get(0).getAttempts());
+		assertEquals(2, results.get(1).getAttempts());
+		assertEquals(1, results.get(2).getAttempts());
+
+		BulkOperationResult missing = results.get(5);
+		assertFalse(missing.isSuccess());
+		assertEquals(404, missing.getStatus());
+		assertEquals(1, missing.getAttempts(), "a 404 must not be retried");
+	}
+
+	@Test
+	void bulkDeleteResendsAThrottledBatchOncePerRound() {
+		List<String> fileIds = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			fileIds.add(drive.addFile("file-" + i + ".csv", folder, 10));
+		}
+		drive.throttleNextBatches(1);
+		int requestsBefore = drive.getRequestCount();
+
+		List<BulkOperationResult> results = service.deleteFiles(fileIds);
+
+		assertEquals(2, drive.getRequestCount() - requestsBefore);
+		for (BulkOperationResult result : results) {
+			assertTrue(result.isSuccess());
+			assertEquals(1, result.getAttempts());
+		}
+	}
+
+	@Test
+	void bulkDeleteReportsABatchThatStaysThrottled() {
+		String fileId = drive.addFile("file.csv", folder, 10);
+		drive.throttleNextBatches(10);
+		int requestsBefore = drive.getRequestCount();
+
+		BulkOperationResult result = service.deleteFiles(List.of(fileId)).get(0);
+
+		assertEquals(4, drive.getRequestCount() - requestsBefore, "one send per round: the first plus 3 retries");
+		assertFalse(result.isSuccess());
+		assertEquals(503, result.getStatus());
+		assertNotNull(drive.getFile(fileId));
+	}
+
+	@Test
+	void uploadStoresCsvStatisticsAsAppProperties() throws IOException {
+		UploadResult result = service.uploadSalesDataFile(csv("date,units,revenue\n2024-01-03,5,10.50\n2024-01-09,2,4\n"),
+				"1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		Map<String, String> properties = drive.getFile(result.getFileId()).getAppProperties();
+		assertEquals("2", properties.get("rows"));
+		assertEquals("2024-01-03", properties.get("dateFrom"));
+		assertEquals("7", properties.get("sum.units"));
+		assertEquals("14.5", properties.get("sum.revenue"));
+		assertEquals("4", properties.get("min.revenue"));
+	}
+
+	@Test
+	void compressedUploadKeepsStatisticsAndCodecWithinDrivesPropertyLimit() throws IOException {
+		GoogleDriveService compressing = newService(new DriveCompression("gzip", 6));
+		StringBuilder header = new StringBuilder("date,units");
+		StringBuilder row = new StringBuilder("2024-01-02,5");
+		for (int i = 1; i < 12; i++) {
+			header.append(",c").append(i);
+			row.append(',').append(i);
+		}
+
+		UploadResult result = compressing.uploadSalesDataFile(csv(header + "\n" + row + "\n"),
+				"1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		Map<String, String> properties = drive.getFile(result.getFileId()).getAppProperties();
+		assertEquals("gzip", properties.get(DriveCompression.CODEC_PROPERTY));
+		assertEquals("1", properties.get("rows"));
+		assertEquals("7", properties.get("sum.c7"));
+		assertNull(properties.get("sum.c8"), "the ninth column would make 31 properties");
+	}
+
+	@Test
+	void compressedStorageRoundTrips() throws IOException {
+		GoogleDriveService compressing = newService(new DriveCompression("gzip", 6));
+		StringBuilder content = new StringBuilder("date,units\n");
+		for (int i = 0; i < 1000; i++) {
+			content.append("2024-01-02,").append(i % 7).append('\n');
+		}
+
+		UploadResult result = compressing.uploadSalesDataFile(csv(content.toString()), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+		UploadResult again = compressing.uploadSalesDataFile(csv(content.toString()), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+
+		DriveFileMetadata stored = compressing.getFileMetadata(result.getFileId());
+		assertEquals("Bryco-2024-01-01_2024-01-15.csv.gz", stored.getName());
+		assertEquals("gzip", stored.getAppProperties().get(DriveCompression.CODEC_PROPERTY));
+		assertTrue(stored.getSize() * 10 < content.length(), "stored " + stored.getSize() + " bytes");
+		assertTrue(again.isDeduplicated(), "identical content compresses to identical bytes");
+		try (InputStream in = compressing.openDecodedStream(stored)) {
+			assertEquals(content.toString(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void resumedUploadIsFinishedLikeAFreshOne() throws IOException {
+		String content = "date,units\n2024-01-02,5\n2024-01-03,2\n";
+		drive.failNextUploadChunks(1);
+		ResumableUploadException interrupted = assertThrows(ResumableUploadException.class, () -> service.uploadSalesDataStream(
+				stream(content), -1, "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15"));
+
+		UploadResult resumed = service.resumeUpload(interrupted.getSessionId(), interrupted.getCommittedBytes(),
+				stream(content.substring((int) interrupted.getCommittedBytes())));
+
+		assertEquals("2", drive.getFile(resumed.getFileId()).getAppProperties().get("rows"));
+		int requestsBefore = drive.getRequestCount();
+		UploadResult again = service.uploadSalesDataFile(csv(content), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+		assertTrue(again.isDeduplicated(), "the resumed file is in the hash index");
+		assertEquals(resumed.getFileId(), again.getFileId());
+		assertEquals(1, drive.getRequestCount() - requestsBefore, "only the files.get confirming the duplicate");
+	}
+
+	@Test
+	void invalidResumedUploadIsDeleted() throws IOException {
+		drive.failNextUploadChunks(1);
+		ResumableUploadException interrupted = assertThrows(ResumableUploadException.class, () -> service.uploadSalesDataStream(
+				stream("date,units\n2024-01-02,5\n"), -1, "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15"));
+
+		assertThrows(SalesCsvValidationException.class, () -> service.resumeUpload(interrupted.getSessionId(), 0,
+				stream("date,units\n2024-03-02,5\n")));
+
+		assertTrue(drive.getChildren(service.resolveCountryFolder("1", "Amazon", "US")).isEmpty());
+	}
+
+	@Test
+	void invalidCsvAbortsUploadWithoutCreatingFile() throws IOException {
+		String usFolder = service.resolveCountryFolder("1", "Amazon", "US");
+
+		SalesCsvValidationException e = assertThrows(SalesCsvValidationException.class, () -> service.uploadSalesDataFile(
+				csv("date,units\n2024-01-02,5\n2024-02-01,1\n"), "1", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15"));
+
+		assertEquals(3, e.getLine());
+		assertTrue(drive.getChildren(usFolder).isEmpty());
+	}
+
+	private static InputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static MockMultipartFile csv(String content) {
+		return new MockMultipartFile("file", "sales.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+	}
+}
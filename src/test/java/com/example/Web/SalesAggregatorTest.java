@@ -0,0 +1,204 @@
+package com.example.Web;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesAggregatorTest {
+
+	@TempDir
+	Path directory;
+
+	private final Map<String, String> contents = new HashMap<>();
+	private final AtomicInteger downloads = new AtomicInteger();
+	private SalesAggregator aggregator;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		aggregator = newAggregator();
+	}
+
+	@AfterEach
+	void tearDown() {
+		aggregator.shutdown();
+	}
+
+	@Test
+	void sumsColumnsGroupedByBrand() throws IOException {
+		List<SalesFileEntry> files = List.of(
+				file("a", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, "date,units,price\n2024-01-05,3,9.99\n2024-01-06,2,12\n"),
+				file("b", "Bryco", "UK", "2024-02-01", "2024-02-29", 1L, "date,price,units\n2024-02-05,0.5,10\n"),
+				file("c", "Acme", "US", "2024-01-01", "2024-01-31", 1L, "date,units\n2024-01-09,7\n"));
+
+		SalesAggregation result = aggregate(files, List.of("brand"), null, null);
+
+		assertEquals(2, result.getGroups().size());
+		SalesAggregateGroup acme = result.getGroups().get(0);
+		assertEquals(Map.of("brand", "Acme"), acme.getGroup());
+		assertEquals(1, acme.getRows());
+		assertEquals(new BigDecimal("7"), acme.getSums().get("units"));
+		assertEquals(BigDecimal.ZERO, acme.getSums().get("price"), "a column missing from a file adds nothing");
+		SalesAggregateGroup bryco = result.getGroups().get(1);
+		assertEquals(3, bryco.getRows());
+		assertEquals(0, new BigDecimal("15").compareTo(bryco.getSums().get("units")));
+		assertEquals(0, new BigDecimal("22.49").compareTo(bryco.getSums().get("price")));
+		assertEquals(3, result.getFilesScanned());
+		assertEquals(3, result.getFilesIndexed());
+	}
+
+	@Test
+	void repeatQueriesAreServedFromCachedColumnsUntilTheFileChanges() throws IOException {
+		SalesFileEntry report = file("a", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, "date,units\n2024-01-05,3\n");
+		aggregate(List.of(report), List.of(), null, null);
+
+		SalesAggregation repeat = aggregate(List.of(report), List.of(), null, null);
+		assertEquals(1, downloads.get());
+		assertEquals(0, repeat.getFilesIndexed());
+
+		// A restart keeps the cached columns.
+		aggregator.shutdown();
+		aggregator = newAggregator();
+		aggregate(List.of(report), List.of(), null, null);
+		assertEquals(1, downloads.get());
+
+		SalesFileEntry changed = file("a", "Bryco", "US", "2024-01-01", "2024-01-31", 2L, "date,units\n2024-01-05,4\n");
+		SalesAggregation result = aggregate(List.of(changed), List.of(), null, null);
+		assertEquals(2, downloads.get());
+		assertEquals(new BigDecimal("4"), result.getGroups().get(0).getSums().get("units"));
+	}
+
+	@Test
+	void rowsOutsideTheDateRangeAreLeftOut() throws IOException {
+		List<SalesFileEntry> files = List.of(file("a", "Bryco", "US", "2024-03-25", "2024-04-05", 1L,
+				"date,units\n2024-03-30,1\n2024-03-31,2\n2024-04-01,4\n"));
+
+		SalesAggregation result = aggregate(files, List.of(), "2024-01-01", "2024-03-31");
+
+		assertEquals(2, result.getGroups().get(0).getRows());
+		assertEquals(new BigDecimal("3"), result.getGroups().get(0).getSums().get("units"));
+	}
+
+	@Test
+	void largeFilesAreScannedInParallelRowRanges() throws IOException {
+		StringBuilder csv = new StringBuilder("date,units\n");
+		int rows = 200_000;
+		for (int i = 0; i < rows; i++) {
+			csv.append("2024-01-").append(String.format("%02d", i % 31 + 1)).append(i % 2 == 0 ? ",1\n" : ",0.5\n");
+		}
+		List<SalesFileEntry> files = List.of(file("big", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, csv.toString()));
+
+		SalesAggregation result = aggregate(files, List.of(), null, null);
+
+		assertEquals(rows, result.getGroups().get(0).getRows());
+		assertEquals(0, new BigDecimal("150000").compareTo(result.getGroups().get(0).getSums().get("units")));
+	}
+
+	@Test
+	void invalidFilesAreReportedAndLeftOut() throws IOException {
+		List<SalesFileEntry> files = List.of(
+				file("good", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, "date,units\n2024-01-05,3\n"),
+				file("ragged", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, "date,units\n2024-01-05\n"));
+
+		SalesAggregation result = aggregate(files, List.of("country"), null, null);
+
+		assertEquals(1, result.getFilesScanned());
+		assertTrue(result.getFailedFiles().containsKey("ragged"));
+		assertEquals(new BigDecimal("3"), result.getGroups().get(0).getSums().get("units"));
+	}
+
+	@Test
+	void filesWithUnparseableDateRangesAreReportedNotFatal() throws IOException {
+		List<SalesFileEntry> files = List.of(
+				file("good", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, "date,units\n2024-01-05,3\n"),
+				file("edited", "Bryco", "US", "2024-13-45", "2024-01-31", 1L, "date,units\n2024-01-05,4\n"));
+
+		SalesAggregation result = aggregate(files, List.of("country"), "2024-01-02", null);
+
+		assertEquals(1, result.getFilesScanned());
+		assertTrue(result.getFailedFiles().get("edited").contains("2024-13-45"), result.getFailedFiles().toString());
+		assertEquals(new BigDecimal("3"), result.getGroups().get(0).getSums().get("units"));
+	}
+
+	@Test
+	void downloadsDoNotTieUpTheScanWorkers() throws IOException {
+		aggregator.shutdown();
+		aggregator = newAggregator(1);
+		List<SalesFileEntry> files = List.of(
+				file("a", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, "date,units\n2024-01-05,3\n"),
+				file("b", "Bryco", "US", "2024-01-01", "2024-01-31", 1L, "date,units\n2024-01-06,4\n"));
+		// Each download waits for the other to start, which a single blocked worker would never allow.
+		CountDownLatch started = new CountDownLatch(2);
+
+		SalesAggregation result = aggregator.aggregate(files, List.of(), List.of("units"), null, null, file -> {
+			started.countDown();
+			try {
+				if (!started.await(5, TimeUnit.SECONDS)) {
+					throw new IOException("The other download never started");
+				}
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			return open(file);
+		});
+
+		assertEquals(Map.of(), result.getFailedFiles());
+		assertEquals(new BigDecimal("7"), result.getGroups().get(0).getSums().get("units"));
+	}
+
+	@Test
+	void unknownDimensionIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> aggregate(List.of(), List.of("region"), null, null));
+	}
+
+	private SalesAggregator newAggregator() throws IOException {
+		return newAggregator(4);
+	}
+
+	private SalesAggregator newAggregator(int parallelism) throws IOException {
+		SalesColumnarCache cache = new SalesColumnarCache(directory.toString(), DataSize.ofMegabytes(64));
+		cache.load();
+		SalesAggregator created = new SalesAggregator(cache,
+				new SalesCsvValidator(true, List.of("date"), "date", DataSize.ofKilobytes(64), 9), parallelism);
+		created.start();
+		return created;
+	}
+
+	private SalesAggregation aggregate(List<SalesFileEntry> files, List<String> groupBy, String fromDate, String toDate)
+			throws IOException {
+		return aggregator.aggregate(files, groupBy, List.of("units", "price"), fromDate, toDate, this::open);
+	}
+
+	private InputStream open(DriveFileMetadata file) {
+		downloads.incrementAndGet();
+		return new ByteArrayInputStream(contents.get(file.getId()).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private SalesFileEntry file(String id, String brand, String country, String from, String to, long modifiedTime,
+								String csv) {
+		contents.put(id, csv);
+		String name = SalesFileName.format(brand, from, to);
+		DriveFileMetadata metadata = new DriveFileMetadata(id, name, "text/csv", (long) csv.length(), null, null, null,
+				modifiedTime);
+		return new SalesFileEntry(metadata, "January", "Amazon", country, brand, from, to);
+	}
+}
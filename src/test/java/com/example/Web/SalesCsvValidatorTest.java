@@ -0,0 +1,93 @@
+package com.example.Web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesCsvValidatorTest {
+
+	private final SalesCsvValidator validator = new SalesCsvValidator(true, List.of("date", "units"), "date",
+			DataSize.ofKilobytes(1), 9);
+
+	@Test
+	void computesStatisticsWhileStreaming() throws IOException {
+		SalesCsvValidator.Stage csv = validator.stage("2024-01-01", "2024-01-31");
+
+		// Quoted fields with commas, escaped quotes and a line break; CRLF line endings; read one byte at a time.
+		drain(csv.wrap(new ByteArrayInputStream(("\uFEFFdate,units,price,note\r\n"
+				+ "2024-01-05,3,9.99,\"big, \"\"red\"\"\nbox\"\r\n"
+				+ "\r\n"
+				+ "2024-01-02,-1,12,plain\r\n").getBytes(StandardCharsets.UTF_8))), 1);
+
+		SalesCsvStats stats = csv.getStats();
+		assertEquals(2, stats.getRows());
+		assertEquals(LocalDate.of(2024, 1, 2), stats.getFirstDate());
+		assertEquals(LocalDate.of(2024, 1, 5), stats.getLastDate());
+		assertEquals(new BigDecimal("2"), stats.getSum("units"));
+		assertEquals(new BigDecimal("-1"), stats.getMin("units"));
+		assertEquals(new BigDecimal("12"), stats.getMax("price"));
+		assertNull(stats.getSum("note"), "non-numeric columns have no statistics");
+		assertEquals("21.99", csv.getAppProperties(0).get("sum.price"));
+	}
+
+	@Test
+	void missingRequiredColumnFailsOnHeader() {
+		SalesCsvValidationException e = assertThrows(SalesCsvValidationException.class,
+				() -> drain(validator.stage("2024-01-01", "2024-01-31").wrap(stream("date,qty\n2024-01-05,3\n")), 8192));
+		assertEquals(1, e.getLine());
+		assertTrue(e.getMessage().contains("[units]"));
+	}
+
+	@Test
+	void abortsOnFirstFatalRowWithoutReadingTheRest() throws IOException {
+		StringBuilder content = new StringBuilder("date,units\n2024-01-05,3\n2024-01-06\n");
+		for (int i = 0; i < 10_000; i++) {
+			content.append("2024-01-07,1\n");
+		}
+		ByteArrayInputStream source = new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8));
+		InputStream in = validator.stage("2024-01-01", "2024-01-31").wrap(source);
+
+		SalesCsvValidationException e = assertThrows(SalesCsvValidationException.class, () -> drain(in, 64));
+		assertEquals(3, e.getLine());
+		assertTrue(source.available() > 100_000, "the rest of the file must not be consumed");
+	}
+
+	@Test
+	void rejectsDatesOutsideTheUploadRange() {
+		SalesCsvValidationException e = assertThrows(SalesCsvValidationException.class,
+				() -> drain(validator.stage("2024-01-01", "2024-01-15").wrap(stream("date,units\n2024-01-16,3\n")), 8192));
+		assertEquals(2, e.getLine());
+		assertThrows(SalesCsvValidationException.class, () -> validator.stage("2024-02-01", "2024-01-01"));
+	}
+
+	@Test
+	void rejectsUnterminatedQuoteAtEndOfFile() {
+		assertThrows(SalesCsvValidationException.class,
+				() -> drain(validator.stage("2024-01-01", "2024-01-31").wrap(stream("date,units\n2024-01-05,\"3\n")), 8192));
+	}
+
+	private static InputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void drain(InputStream in, int bufferSize) throws IOException {
+		byte[] buffer = new byte[bufferSize];
+		while (in.read(buffer, 0, bufferSize) != -1) {
+			// Discard; only the validation side effects matter.
+		}
+		in.transferTo(OutputStream.nullOutputStream());
+	}
+}
@@ -0,0 +1,225 @@
+package com.example.Web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadStagingQueueTest {
+
+	@TempDir
+	Path directory;
+
+	private final List<UploadStagingQueue> queues = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		queues.forEach(UploadStagingQueue::shutdown);
+	}
+
+	@Test
+	void stagedFileIsUploadedInBackground() throws Exception {
+		GoogleDriveService drive = mock(GoogleDriveService.class);
+		List<String> uploadedContent = new ArrayList<>();
+		when(drive.uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+				.thenAnswer(invocation -> {
+					uploadedContent.add(new String(invocation.<MultipartFile>getArgument(0).getBytes(), StandardCharsets.UTF_8));
+					return new UploadResult("file-1", false, false);
+				});
+		UploadStagingQueue queue = newQueue(drive, 3);
+
+		UploadJob queued = queue.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+		UploadJob done = awaitFinished(queue, queued.getJobId());
+
+		assertEquals(UploadJob.State.DONE, done.getState());
+		assertEquals("file-1", done.getFileId());
+		assertEquals(List.of("date,units\n2024-01-02,5\n"), uploadedContent);
+		Path staged = directory.resolve(queued.getJobId() + ".csv");
+		long deadline = System.currentTimeMillis() + 5000;
+		while (Files.exists(staged) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10); // Removed right after the DONE state is journaled
+		}
+		assertFalse(Files.exists(staged), "staged content is removed once uploaded");
+	}
+
+	@Test
+	void transientFailuresAreRetried() throws Exception {
+		GoogleDriveService drive = mock(GoogleDriveService.class);
+		when(drive.uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+				.thenThrow(new IOException("Connection reset"))
+				.thenReturn(new UploadResult("file-1", false, false));
+		UploadStagingQueue queue = newQueue(drive, 3);
+
+		UploadJob done = awaitFinished(queue, queue.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15").getJobId());
+
+		assertEquals(UploadJob.State.DONE, done.getState());
+		assertEquals(2, done.getAttempts());
+	}
+
+	@Test
+	void rejectedCsvIsNotRetried() throws Exception {
+		GoogleDriveService drive = mock(GoogleDriveService.class);
+		when(drive.uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+				.thenThrow(new SalesCsvValidationException(2, "date 2024-02-01 is outside the file's range"));
+		UploadStagingQueue queue = newQueue(drive, 3);
+
+		UploadJob failed = awaitFinished(queue, queue.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15").getJobId());
+
+		assertEquals(UploadJob.State.FAILED, failed.getState());
+		assertEquals(1, failed.getAttempts());
+		assertTrue(failed.getError().startsWith("Line 2:"));
+	}
+
+	@Test
+	void invalidParametersAreRejectedBeforeStaging() throws Exception {
+		GoogleDriveService drive = mock(GoogleDriveService.class);
+		doThrow(new SalesCsvValidationException(0, "toDate 'soon' is not a YYYY-MM-DD date"))
+				.when(drive).checkUploadParameters("01", "2024-01-01", "soon");
+		UploadStagingQueue queue = newQueue(drive, 3);
+
+		assertThrows(SalesCsvValidationException.class,
+				() -> queue.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "soon"));
+
+		try (Stream<Path> staged = Files.list(directory)) {
+			assertEquals(0, staged.count());
+		}
+		verify(drive, never()).uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
+	}
+
+	@Test
+	void unfinishedJobsAreRecoveredAfterRestart() throws Exception {
+		GoogleDriveService stuck = mock(GoogleDriveService.class);
+		CountDownLatch uploading = new CountDownLatch(1);
+		when(stuck.uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+				.thenAnswer(invocation -> {
+					uploading.countDown();
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1)); // Drive hangs until the service is stopped
+					return null;
+				});
+		UploadStagingQueue first = newQueue(stuck, 3);
+		String jobId = first.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15").getJobId();
+		assertTrue(uploading.await(5, TimeUnit.SECONDS));
+		first.shutdown();
+
+		GoogleDriveService healthy = mock(GoogleDriveService.class);
+		when(healthy.uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+				.thenReturn(new UploadResult("file-1", false, false));
+		UploadStagingQueue restarted = newQueue(healthy, 3);
+
+		UploadJob done = awaitFinished(restarted, jobId);
+		assertEquals(UploadJob.State.DONE, done.getState());
+		assertEquals(2, done.getAttempts());
+		verify(healthy, times(1)).uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
+	}
+
+	@Test
+	void concurrentSubmitsCannotOvershootMaxPendingJobs() throws Exception {
+		GoogleDriveService drive = mock(GoogleDriveService.class);
+		CountDownLatch release = new CountDownLatch(1);
+		when(drive.uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+				.thenAnswer(invocation -> {
+					release.await(5, TimeUnit.SECONDS);
+					return new UploadResult("file-1", false, false);
+				});
+		UploadStagingQueue queue = newQueue(drive, 3);
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		List<Future<UploadJob>> submits = new ArrayList<>();
+		try {
+			for (int i = 0; i < 30; i++) {
+				submits.add(clients.submit(() -> queue.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15")));
+			}
+			List<String> accepted = new ArrayList<>();
+			int rejected = 0;
+			for (Future<UploadJob> submit : submits) {
+				try {
+					accepted.add(submit.get(5, TimeUnit.SECONDS).getJobId());
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof DriveRateLimitException, e.getCause().toString());
+					rejected++;
+				}
+			}
+			assertEquals(10, accepted.size());
+			assertEquals(20, rejected);
+
+			release.countDown();
+			for (String jobId : accepted) {
+				assertEquals(UploadJob.State.DONE, awaitFinished(queue, jobId).getState());
+			}
+			UploadJob afterDrain = queue.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+			assertEquals(UploadJob.State.DONE, awaitFinished(queue, afterDrain.getJobId()).getState());
+		} finally {
+			release.countDown();
+			clients.shutdownNow();
+		}
+	}
+
+	@Test
+	void fileStagedDuringShutdownIsAcceptedAndUploadedAfterRestart() throws Exception {
+		GoogleDriveService drive = mock(GoogleDriveService.class);
+		when(drive.uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+				.thenReturn(new UploadResult("file-1", false, false));
+		UploadStagingQueue stopping = newQueue(drive, 3);
+		stopping.shutdown();
+
+		UploadJob accepted = stopping.submit(csv(), "01", "Amazon", "US", "Bryco", "2024-01-01", "2024-01-15");
+		assertEquals(UploadJob.State.QUEUED, accepted.getState());
+
+		UploadJob done = awaitFinished(newQueue(drive, 3), accepted.getJobId());
+		assertEquals(UploadJob.State.DONE, done.getState());
+		verify(drive, times(1)).uploadSalesDataFile(any(), anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
+	}
+
+	private UploadStagingQueue newQueue(GoogleDriveService drive, int maxAttempts) throws IOException {
+		UploadStagingQueue queue = new UploadStagingQueue(drive, new ObjectMapper(), new DriveMetrics(new SimpleMeterRegistry()),
+				true, directory.toString(), 1, maxAttempts, Duration.ofMillis(10), Duration.ofMillis(100), 10, Duration.ofHours(1));
+		queues.add(queue);
+		queue.start();
+		return queue;
+	}
+
+	private static MockMultipartFile csv() {
+		return new MockMultipartFile("file", "sales.csv", "text/csv", "date,units\n2024-01-02,5\n".getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static UploadJob awaitFinished(UploadStagingQueue queue, String jobId) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		UploadJob job = queue.getJob(jobId);
+		while ((job.getState() == UploadJob.State.QUEUED || job.getState() == UploadJob.State.UPLOADING)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			job = queue.getJob(jobId);
+		}
+		return job;
+	}
+}